@@ -0,0 +1,96 @@
+package guru.springframework.spring6resttemplate.benchmarks;
+
+import guru.springframework.spring6resttemplate.Spring6ResttemplateApplication;
+import guru.springframework.spring6resttemplate.client.BeerClientImpl;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.stub.BeerStubServer;
+import guru.springframework.spring6resttemplate.stub.TestConfigurationExcludeFilter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.data.domain.Page;
+
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end cost of the BeerClientImpl operations against BeerStubServer on localhost.
+ * The client is the real Spring bean, with the pooled request factory and OAuthClientInterceptor,
+ * only the beer service and the token endpoint are stubbed.
+ * <p>
+ * Run with {@code ./mvnw -Pbenchmarks test-compile exec:exec}, which adds {@code -prof gc} for allocation rates.
+ * SampleTime reports the latency percentiles.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BeerClientBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class ClientState {
+
+        BeerStubServer stubServer;
+        ConfigurableApplicationContext context;
+        BeerClientImpl beerClient;
+        BeerDTO beer;
+
+        @Setup(Level.Trial)
+        public void setUp() {
+            stubServer = new BeerStubServer(10_000).start();
+            context = new SpringApplicationBuilder(Spring6ResttemplateApplication.class)
+                    .initializers(TestConfigurationExcludeFilter::register)
+                    .run(stubServer.commandLineArgs());
+            beerClient = context.getBean(BeerClientImpl.class);
+            beer = stubServer.beer(1);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() {
+            context.close();
+            stubServer.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class PageSizeState {
+
+        @Param({"25", "250", "1000"})
+        int pageSize;
+    }
+
+    @Benchmark
+    public BeerDTO getBeerById(ClientState state) {
+        return state.beerClient.getBeerById(state.beer.getId());
+    }
+
+    @Benchmark
+    public Page<BeerDTO> listBeers(ClientState state, PageSizeState page) {
+        return state.beerClient.listBeers(null, null, true, 1, page.pageSize);
+    }
+
+    @Benchmark
+    public BeerDTO createBeer(ClientState state) {
+        state.beer.setId(null);
+        return state.beerClient.createBeer(state.beer);
+    }
+
+    @Benchmark
+    public BeerDTO updateBeer(ClientState state) {
+        state.beer.setId(UUID.randomUUID());
+        return state.beerClient.updateBeer(state.beer);
+    }
+}
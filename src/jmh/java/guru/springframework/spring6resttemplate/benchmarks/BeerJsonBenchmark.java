@@ -0,0 +1,123 @@
+package guru.springframework.spring6resttemplate.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import guru.springframework.spring6resttemplate.config.BeerJsonConverter;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
+import guru.springframework.spring6resttemplate.stub.BeerStubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding of getBeerById and listBeers responses by the JSON converter Boot would give the RestTemplate against
+ * BeerJsonConverter, the beer client's warmed up mapper with Blackbird. No HTTP involved, the bodies are the
+ * BeerStubServer's beers. firstReadPage is the first decode of a new converter, where Boot's converter pays for introspection.
+ * <p>
+ * Run with {@code ./mvnw -Pbenchmarks test-compile exec:exec -Djmh.includes=BeerJsonBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerJsonBenchmark {
+
+    static final Type PAGE_TYPE = new ParameterizedTypeReference<BeerDTOPageImpl<BeerDTO>>() {}.getType();
+
+    @Param({"default", "beer"})
+    String converter;
+
+    @Param({"25", "1000"})
+    int pageSize;
+
+    MappingJackson2HttpMessageConverter jsonConverter;
+    byte[] beerJson;
+    byte[] pageJson;
+
+    //A new converter before every call of firstReadPage, the beer one is warmed up already
+    MappingJackson2HttpMessageConverter newConverter;
+
+    MappingJackson2HttpMessageConverter createConverter() {
+        //Like Boot's builder, with the parameter names module
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule()).build();
+        return converter.equals("beer")
+                ? new BeerJsonConverter(objectMapper)
+                : new MappingJackson2HttpMessageConverter(objectMapper);
+    }
+
+    @Setup(Level.Invocation)
+    public void newConverter() {
+        newConverter = createConverter();
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        jsonConverter = createConverter();
+
+        //The stub's JSON, as the beer service sends it
+        ObjectMapper writer = Jackson2ObjectMapperBuilder.json().build().disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        BeerStubServer stub = new BeerStubServer(pageSize);
+        List<BeerDTO> beers = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            beers.add(stub.beer(i));
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("content", beers);
+        page.put("number", 0);
+        page.put("size", pageSize);
+        page.put("totalElements", pageSize);
+        beerJson = writer.writeValueAsBytes(beers.get(0));
+        pageJson = writer.writeValueAsBytes(page);
+    }
+
+    @Benchmark
+    public Object readBeer() throws IOException {
+        return jsonConverter.read(BeerDTO.class, null, message(beerJson));
+    }
+
+    @Benchmark
+    public Object readPage() throws IOException {
+        return jsonConverter.read(PAGE_TYPE, null, message(pageJson));
+    }
+
+    //What the first listBeers after startup pays for decoding
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 50)
+    public Object firstReadPage() throws IOException {
+        return newConverter.read(PAGE_TYPE, null, message(pageJson));
+    }
+
+    private static MockHttpInputMessage message(byte[] body) {
+        MockHttpInputMessage message = new MockHttpInputMessage(body);
+        message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        return message;
+    }
+}
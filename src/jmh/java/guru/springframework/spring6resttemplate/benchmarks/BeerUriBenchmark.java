@@ -0,0 +1,70 @@
+package guru.springframework.spring6resttemplate.benchmarks;
+
+import guru.springframework.spring6resttemplate.client.BeerClientImpl;
+import guru.springframework.spring6resttemplate.client.BeerUris;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriTemplateHandler;
+
+import java.net.URI;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * URI building of listBeers and getBeerById: the String URL expanded by the RestTemplate's template handler
+ * against the ready made URIs of BeerUris. No HTTP involved.
+ * <p>
+ * Run with {@code ./mvnw -Pbenchmarks test-compile exec:exec -Djmh.includes=BeerUriBenchmark},
+ * gc.alloc.rate.norm is the allocation per call.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerUriBenchmark {
+
+    static final String ROOT_URI = "http://localhost:8080";
+
+    UriTemplateHandler templateHandler = new RestTemplateBuilder().rootUri(ROOT_URI).build().getUriTemplateHandler();
+    BeerUris uris = new BeerUris(ROOT_URI);
+    UUID beerId = UUID.randomUUID();
+
+    @Benchmark
+    public URI listBeersTemplate() {
+        String url = UriComponentsBuilder.fromPath(BeerClientImpl.GET_BEER_PATH)
+                .queryParam("beerName", "ALE")
+                .queryParam("beerStyle", BeerStyle.PALE_ALE)
+                .queryParam("pageNumber", 2)
+                .queryParam("pageSize", 25)
+                .queryParam("showInventory", true)
+                .toUriString();
+        return templateHandler.expand(url);
+    }
+
+    @Benchmark
+    public URI listBeersPrebuilt() {
+        return uris.beers("ALE", BeerStyle.PALE_ALE, true, 2, 25);
+    }
+
+    @Benchmark
+    public URI getBeerByIdTemplate() {
+        return templateHandler.expand(BeerClientImpl.GET_BEER_BY_ID_PATH, beerId);
+    }
+
+    @Benchmark
+    public URI getBeerByIdPrebuilt() {
+        return uris.beer(beerId);
+    }
+}
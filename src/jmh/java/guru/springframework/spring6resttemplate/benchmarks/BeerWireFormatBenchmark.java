@@ -0,0 +1,125 @@
+package guru.springframework.spring6resttemplate.benchmarks;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import guru.springframework.spring6resttemplate.config.BeerBinaryConverter;
+import guru.springframework.spring6resttemplate.config.BeerJsonConverter;
+import guru.springframework.spring6resttemplate.config.BeerWireFormat;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.stub.BeerStubServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * JSON against CBOR and Smile for beer payloads, through the converters the beer client gets with
+ * rest.template.wireFormat. Decoding of a beer and a page, encoding of a beer as createBeer / updateBeer send it.
+ * The setup prints the payload sizes, plain and gzipped, as the wire would carry them with compression on.
+ * <p>
+ * Run with {@code ./mvnw -Pbenchmarks test-compile exec:exec -Djmh.includes=BeerWireFormatBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class BeerWireFormatBenchmark {
+
+    @Param({"JSON", "CBOR", "SMILE"})
+    BeerWireFormat wireFormat;
+
+    @Param({"25", "1000"})
+    int pageSize;
+
+    AbstractJackson2HttpMessageConverter converter;
+    BeerDTO beer;
+    byte[] beerBytes;
+    byte[] pageBytes;
+
+    @Setup
+    public void setUp() throws IOException {
+        //Like Boot's builder, with the parameter names module
+        BeerJsonConverter jsonConverter = new BeerJsonConverter(builder().build());
+        converter = wireFormat == BeerWireFormat.JSON
+                ? jsonConverter
+                : new BeerBinaryConverter(wireFormat, builder(), jsonConverter.getObjectMapper());
+
+        BeerStubServer stub = new BeerStubServer(pageSize);
+        List<BeerDTO> beers = new ArrayList<>();
+        for (int i = 0; i < pageSize; i++) {
+            beers.add(stub.beer(i));
+        }
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("content", beers);
+        page.put("number", 0);
+        page.put("size", pageSize);
+        page.put("totalElements", pageSize);
+
+        beer = beers.get(0);
+        beerBytes = write(beer);
+        pageBytes = write(page);
+        System.out.printf("%n%s payloads: beer %d bytes (%d gzipped), page of %d %d bytes (%d gzipped)%n", wireFormat,
+                beerBytes.length, gzip(beerBytes).length, pageSize, pageBytes.length, gzip(pageBytes).length);
+    }
+
+    private static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule());
+    }
+
+    @Benchmark
+    public Object readBeer() throws IOException {
+        return converter.read(BeerDTO.class, null, message(beerBytes));
+    }
+
+    @Benchmark
+    public Object readPage() throws IOException {
+        return converter.read(BeerJsonBenchmark.PAGE_TYPE, null, message(pageBytes));
+    }
+
+    @Benchmark
+    public byte[] writeBeer() throws IOException {
+        return write(beer);
+    }
+
+    private byte[] write(Object value) throws IOException {
+        MockHttpOutputMessage message = new MockHttpOutputMessage();
+        converter.write(value, wireFormat.getMediaType(), message);
+        return message.getBodyAsBytes();
+    }
+
+    private MockHttpInputMessage message(byte[] body) {
+        MockHttpInputMessage message = new MockHttpInputMessage(body);
+        message.getHeaders().setContentType(wireFormat.getMediaType());
+        return message;
+    }
+
+    private static byte[] gzip(byte[] body) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        return compressed.toByteArray();
+    }
+}
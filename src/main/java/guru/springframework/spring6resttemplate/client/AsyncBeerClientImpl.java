@@ -0,0 +1,114 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.lang.reflect.Method;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+//Runs the blocking BeerClient calls on virtual threads, so a fan out of hundreds of calls
+//doesn't tie up one platform thread each. The synchronous BeerClientImpl stays untouched.
+@Service
+public class AsyncBeerClientImpl implements AsyncBeerClient, DisposableBean {
+
+    private final BeerClient beerClient;
+    private final ExecutorService executor;
+
+    //All BeerClient calls go to the host of rest.template.rootUrl, this caps how many are in flight against it
+    private final String targetHost;
+    private final Semaphore hostPermits;
+
+    public AsyncBeerClientImpl(BeerClient beerClient,
+                               @Value("${rest.template.rootUrl}") String rootUrl,
+                               @Value("${rest.template.async.maxConcurrencyPerHost:${rest.template.pool.maxPerRoute:20}}") int maxConcurrencyPerHost) {
+        this.beerClient = beerClient;
+        this.targetHost = UriComponentsBuilder.fromHttpUrl(rootUrl).build().getHost();
+        this.hostPermits = new Semaphore(maxConcurrencyPerHost);
+        this.executor = createExecutor(maxConcurrencyPerHost);
+    }
+
+    @Override
+    public CompletableFuture<Page<BeerDTO>> listBeers() {
+        return submit(beerClient::listBeers);
+    }
+
+    @Override
+    public CompletableFuture<Page<BeerDTO>> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        return submit(() -> beerClient.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize));
+    }
+
+    @Override
+    public CompletableFuture<BeerDTO> getBeerById(UUID beerId) {
+        return submit(() -> beerClient.getBeerById(beerId));
+    }
+
+    @Override
+    public CompletableFuture<BeerDTO> createBeer(BeerDTO newDto) {
+        return submit(() -> beerClient.createBeer(newDto));
+    }
+
+    @Override
+    public CompletableFuture<BeerDTO> updateBeer(BeerDTO beerDTO) {
+        return submit(() -> beerClient.updateBeer(beerDTO));
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteBeer(UUID id) {
+        return submit(() -> {
+            beerClient.deleteBeer(id);
+            return null;
+        });
+    }
+
+    public String getTargetHost() {
+        return targetHost;
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdown();
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> call) {
+        return CompletableFuture.supplyAsync(() -> {
+            //Blocking here is cheap on a virtual thread, on the fallback pool permits match the thread count
+            hostPermits.acquireUninterruptibly();
+            try {
+                return call.get();
+            } finally {
+                hostPermits.release();
+            }
+        }, executor);
+    }
+
+    //Executors.newVirtualThreadPerTaskExecutor() only exists from JDK 21 on and we compile against 17,
+    //so we look it up at runtime and fall back to a bounded platform thread pool when it's missing.
+    static ExecutorService createExecutor(int fallbackThreads) {
+        try {
+            Method virtualThreadExecutor = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) virtualThreadExecutor.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("beer-client-async-");
+            threadFactory.setDaemon(true);
+
+            ThreadPoolExecutor pool = new ThreadPoolExecutor(fallbackThreads, fallbackThreads,
+                    60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+            pool.allowCoreThreadTimeOut(true);
+            return pool;
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects getBeerById calls arriving within a short window into one getBeersByIds call of the delegate, and
+ * hands every caller its own beer from the result. Opt-in with rest.template.batching.enabled=true, it then wraps
+ * BeerClientImpl, and is wrapped by the hedging client when that is enabled too, see BeerClientConfig. The replica,
+ * when enabled, stays the BeerClient and nothing is batched. Batching needs rest.template.batching.idsParam, without
+ * a multi-id lookup a batch would still go out as one GET per id, so startup fails when it is empty.
+ * <p>
+ * The first caller of a batch leads it: it waits up to window for more ids, or until maxBatchSize distinct ids
+ * are in, then sends the batch on its own thread. Followers just wait for the result, so no extra threads are
+ * involved. A caller alone in its window pays the window on top of the request.
+ * <p>
+ * An id missing from the result is fetched by its caller with a plain getBeerById, which gives the usual 404 for
+ * an unknown id. When the whole batch fails, fallbackToSingleGets makes every caller do the same, otherwise the
+ * error is thrown to all of them. Callers asking for the same id in one batch share the returned object, so they
+ * should treat it as read only.
+ */
+@Service
+@ConditionalOnExpression("${rest.template.batching.enabled:false} and !${rest.template.replica.enabled:false}")
+public class BatchingBeerClient extends DelegatingBeerClient {
+
+    static final String BATCH_SIZE = "beer.client.batch.size";
+    static final String BATCH_FILL = "beer.client.batch.fill";
+    static final String FALLBACKS = "beer.client.batch.fallbacks";
+
+    private final long windowNanos;
+    private final int maxBatchSize;
+    private final boolean fallbackToSingleGets;
+    private final MeterRegistry meterRegistry;
+    private final DistributionSummary batchSize;
+    private final DistributionSummary batchFill;
+
+    private final Object lock = new Object();
+    private Batch openBatch;
+
+    @Autowired
+    public BatchingBeerClient(BeerClientImpl delegate, ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${rest.template.batching.window:2ms}") Duration window,
+                              @Value("${rest.template.batching.maxBatchSize:100}") int maxBatchSize,
+                              @Value("${rest.template.batching.fallbackToSingleGets:true}") boolean fallbackToSingleGets,
+                              @Value("${rest.template.batching.idsParam:}") String idsParam) {
+        this(delegate, window, maxBatchSize, fallbackToSingleGets,
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+        if (idsParam.isBlank()) {
+            throw new IllegalStateException("rest.template.batching.enabled needs rest.template.batching.idsParam, "
+                    + "the beer service's query parameter for a list of ids");
+        }
+    }
+
+    public BatchingBeerClient(BeerClient delegate, Duration window, int maxBatchSize, boolean fallbackToSingleGets,
+                              MeterRegistry meterRegistry) {
+        super(delegate);
+        this.windowNanos = window.toNanos();
+        this.maxBatchSize = maxBatchSize;
+        this.fallbackToSingleGets = fallbackToSingleGets;
+        this.meterRegistry = meterRegistry;
+        this.batchSize = DistributionSummary.builder(BATCH_SIZE)
+                .description("Distinct ids per batched getBeersByIds request")
+                .register(meterRegistry);
+        this.batchFill = DistributionSummary.builder(BATCH_FILL)
+                .description("Batch size relative to maxBatchSize")
+                .publishPercentiles(0.5, 0.95)
+                .register(meterRegistry);
+    }
+
+    @Override
+    public BeerDTO getBeerById(UUID beerId) {
+        CompletableFuture<BeerDTO> result = new CompletableFuture<>();
+        Batch batch;
+        boolean leader = false;
+
+        synchronized (lock) {
+            if (openBatch == null) {
+                openBatch = new Batch();
+                leader = true;
+            }
+            batch = openBatch;
+            batch.add(beerId, result);
+            if (batch.size() >= maxBatchSize) {
+                openBatch = null;
+                batch.full.countDown();
+            }
+        }
+
+        if (leader) {
+            batch.awaitFull(windowNanos);
+            synchronized (lock) {
+                if (openBatch == batch) {
+                    openBatch = null;
+                }
+            }
+            send(batch);
+        }
+
+        //null means the batch couldn't answer for this id
+        BeerDTO beer = join(result);
+        return beer != null ? beer : delegate.getBeerById(beerId);
+    }
+
+    private void send(Batch batch) {
+        List<UUID> ids = new ArrayList<>(batch.callers.keySet());
+        batchSize.record(ids.size());
+        batchFill.record((double) ids.size() / maxBatchSize);
+
+        Map<UUID, BeerDTO> beers;
+        try {
+            beers = delegate.getBeersByIds(ids);
+        } catch (RuntimeException e) {
+            if (fallbackToSingleGets) {
+                meterRegistry.counter(FALLBACKS, "reason", "error").increment(ids.size());
+                batch.callers.values().forEach(futures -> futures.forEach(future -> future.complete(null)));
+            } else {
+                batch.callers.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+            }
+            return;
+        } catch (Error e) {
+            batch.callers.values().forEach(futures -> futures.forEach(future -> future.completeExceptionally(e)));
+            throw e;
+        }
+
+        batch.callers.forEach((id, futures) -> {
+            BeerDTO beer = beers.get(id);
+            if (beer == null) {
+                meterRegistry.counter(FALLBACKS, "reason", "missing").increment();
+            }
+            futures.forEach(future -> future.complete(beer));
+        });
+    }
+
+    private static <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    //Callers per id, in arrival order. Only changed under the client's lock while the batch is open.
+    private static class Batch {
+
+        private final Map<UUID, List<CompletableFuture<BeerDTO>>> callers = new LinkedHashMap<>();
+        private final CountDownLatch full = new CountDownLatch(1);
+
+        void add(UUID beerId, CompletableFuture<BeerDTO> result) {
+            callers.computeIfAbsent(beerId, id -> new ArrayList<>(1)).add(result);
+        }
+
+        int size() {
+            return callers.size();
+        }
+
+        void awaitFull(long windowNanos) {
+            try {
+                full.await(windowNanos, TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                //The followers still need their answer, the batch is sent right away
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+}
@@ -0,0 +1,661 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerBatch;
+import guru.springframework.spring6resttemplate.model.BeerBatchPage;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Primary;
+import org.springframework.data.domain.Page;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * In-process copy of the beer catalogue that answers reads without a round trip. Opt-in with
+ * rest.template.replica.enabled=true, it then replaces BeerClientImpl as the BeerClient bean.
+ * <p>
+ * The whole catalogue is loaded through paged listBeers in the background at startup and refreshed every
+ * refreshInterval. With rest.template.replica.updatedSinceParam set, a refresh is a delta sync: it only reads the
+ * beers updated since the newest updateDate read so far (less DELTA_OVERLAP) and merges those whose version (or
+ * updateDate) moved. A delta doesn't show deletions, so every fullSyncInterval the whole catalogue is read again and
+ * the beers that are gone are dropped. Without the parameter every refresh is a full one.
+ * <p>
+ * Lookups by id go to a hash map. Listing and {@link #findByNamePrefix(String)} use name ordered skip lists of the
+ * whole catalogue and of every style, a change only moves the beer it changed. A page is found by skipping through
+ * its list and a name filter scans it, nothing is copied or sorted per read.
+ * <p>
+ * Reads fall back to the remote client while the replica is not loaded yet, when the last successful sync is
+ * older than maxStaleness, and for an id the replica doesn't know (the beer fetched is added). Writes go to the
+ * remote client and are applied to the replica right away, so callers read their own writes. A sync running at the
+ * time leaves the beers written as they are, its pages may have been read before the write.
+ * Local pages are sorted by beer name and returned beers are copies.
+ * <p>
+ * With rest.template.replica.snapshot.path set, the replica is written to that file after every sync and read
+ * back at startup, see {@link BeerCatalogSnapshot}. A restored snapshot is served right away, for up to
+ * snapshot.maxAge after the sync it was taken at, while the first sync catches up in the background.
+ */
+@Slf4j
+@Primary
+@Service
+@ConditionalOnProperty(name = "rest.template.replica.enabled", havingValue = "true")
+public class BeerCatalogReplica extends DelegatingBeerClient implements InitializingBean, DisposableBean {
+
+    static final String REQUESTS = "beer.client.replica.requests";
+    static final String CHANGES = "beer.client.replica.changes";
+    static final String SYNC = "beer.client.replica.sync";
+    static final String SNAPSHOT = "beer.client.replica.snapshot";
+
+    //Same defaults and cap as the beer service applies to pageSize
+    private static final int DEFAULT_PAGE_SIZE = 25;
+    private static final int MAX_PAGE_SIZE = 1000;
+
+    //A delta sync reads back this far before the newest updateDate it saw, for updates committed out of order or
+    //stamped by another instance's clock. Reading a beer twice is harmless, it is merged by version.
+    static final Duration DELTA_OVERLAP = Duration.ofMinutes(1);
+
+    private static final Comparator<Entry> NAME_ORDER = Comparator.comparing(Entry::lowerCaseName)
+            .thenComparing(Entry::id, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private final MeterRegistry meterRegistry;
+    private final Duration refreshInterval;
+    private final Duration maxStaleness;
+    private final int syncPageSize;
+    private final boolean deltaSync;
+    private final Duration fullSyncInterval;
+    private final Path snapshotPath;
+    private final Duration snapshotMaxAge;
+    private final Clock clock;
+    private final ScheduledExecutorService scheduler;
+
+    private final ConcurrentHashMap<UUID, BeerDTO> beers = new ConcurrentHashMap<>();
+    //Ids written since the running sync started reading. The remote pages may predate those writes, so the sync
+    //leaves these beers as the writes left them.
+    private final Set<UUID> writtenSinceSync = ConcurrentHashMap.newKeySet();
+    //Name order of the whole catalogue and of every style, kept up to date along with the id map
+    private final NameIndex all = new NameIndex();
+    private final Map<BeerStyle, NameIndex> byStyle = new EnumMap<>(BeerStyle.class);
+    //Set by writes. They are in the map already, so the next sync sees no difference, but not in the snapshot file yet.
+    private volatile boolean snapshotOutdated;
+    private volatile Instant lastSync;
+    //Only used by sync. Writes don't move the updateDate, the service may hold older updates the replica hasn't read.
+    private Instant lastFullSync;
+    private LocalDateTime newestUpdateDate;
+    //maxStaleness, or snapshotMaxAge while we serve a restored snapshot and the first sync hasn't succeeded yet
+    private volatile Duration stalenessBound;
+
+    @Autowired
+    public BeerCatalogReplica(BeerClientImpl delegate, ObjectProvider<MeterRegistry> meterRegistry,
+                              @Value("${rest.template.replica.refreshInterval:60s}") Duration refreshInterval,
+                              @Value("${rest.template.replica.maxStaleness:5m}") Duration maxStaleness,
+                              @Value("${rest.template.replica.pageSize:1000}") int syncPageSize,
+                              @Value("${rest.template.replica.snapshot.path:}") String snapshotPath,
+                              @Value("${rest.template.replica.snapshot.maxAge:1h}") Duration snapshotMaxAge,
+                              @Value("${rest.template.replica.updatedSinceParam:}") String updatedSinceParam,
+                              @Value("${rest.template.replica.fullSyncInterval:1h}") Duration fullSyncInterval) {
+        this(delegate, meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), refreshInterval, maxStaleness,
+                syncPageSize, StringUtils.hasText(snapshotPath) ? Path.of(snapshotPath) : null, snapshotMaxAge,
+                StringUtils.hasText(updatedSinceParam), fullSyncInterval, Clock.systemUTC());
+    }
+
+    BeerCatalogReplica(BeerClient delegate, MeterRegistry meterRegistry, Duration refreshInterval,
+                       Duration maxStaleness, int syncPageSize, Clock clock) {
+        this(delegate, meterRegistry, refreshInterval, maxStaleness, syncPageSize, null, Duration.ZERO, clock);
+    }
+
+    BeerCatalogReplica(BeerClient delegate, MeterRegistry meterRegistry, Duration refreshInterval,
+                       Duration maxStaleness, int syncPageSize, Path snapshotPath, Duration snapshotMaxAge, Clock clock) {
+        this(delegate, meterRegistry, refreshInterval, maxStaleness, syncPageSize, snapshotPath, snapshotMaxAge, false,
+                Duration.ZERO, clock);
+    }
+
+    BeerCatalogReplica(BeerClient delegate, MeterRegistry meterRegistry, Duration refreshInterval,
+                       Duration maxStaleness, int syncPageSize, Path snapshotPath, Duration snapshotMaxAge,
+                       boolean deltaSync, Duration fullSyncInterval, Clock clock) {
+        super(delegate);
+        this.meterRegistry = meterRegistry;
+        this.refreshInterval = refreshInterval;
+        this.maxStaleness = maxStaleness;
+        this.syncPageSize = syncPageSize;
+        this.snapshotPath = snapshotPath;
+        this.snapshotMaxAge = snapshotMaxAge;
+        this.deltaSync = deltaSync;
+        this.fullSyncInterval = fullSyncInterval;
+        this.clock = clock;
+        this.stalenessBound = maxStaleness;
+        for (BeerStyle style : BeerStyle.values()) {
+            byStyle.put(style, new NameIndex());
+        }
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("beer-replica-");
+        threadFactory.setDaemon(true);
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(threadFactory);
+
+        Gauge.builder("beer.client.replica.size", beers, Map::size)
+                .description("Beers held by the replica")
+                .register(meterRegistry);
+        Gauge.builder("beer.client.replica.staleness", this,
+                        replica -> replica.lastSync == null ? Double.NaN : replica.staleness().toMillis() / 1000.0)
+                .description("Time since the last successful sync, NaN before the first one")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void afterPropertiesSet() {
+        if (snapshotPath != null && Files.exists(snapshotPath)) {
+            restoreSnapshot();
+        }
+        scheduler.scheduleWithFixedDelay(this::syncQuietly, 0, refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void destroy() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Reads the beers updated since the last sync, or the whole catalogue when a full sync is due, and merges them
+     * into the replica. Runs on the scheduler, public so a caller can force a refresh.
+     */
+    public synchronized void sync() {
+        boolean changed = lastSync == null;
+        Instant started = clock.instant();
+        //A full sync while no updateDate has been read yet, there is nothing to ask for the updates since
+        boolean full = !deltaSync || newestUpdateDate == null || lastFullSync == null
+                || !started.isBefore(lastFullSync.plus(fullSyncInterval));
+        String type = full ? "full" : "delta";
+        Timer.Sample sample = Timer.start(meterRegistry);
+        writtenSinceSync.clear();
+        Map<UUID, BeerDTO> remote = new HashMap<>();
+        try (Stream<BeerDTO> read = full ? delegate.streamBeers(null, null, true, syncPageSize)
+                : delegate.streamBeersUpdatedSince(newestUpdateDate.minus(DELTA_OVERLAP), syncPageSize)) {
+            read.filter(beer -> beer.getId() != null).forEach(beer -> remote.put(beer.getId(), beer));
+        } catch (RuntimeException e) {
+            sample.stop(meterRegistry.timer(SYNC, "type", type, "outcome", "FAILURE"));
+            throw e;
+        }
+
+        //Both passes check for a write inside compute, which holds the entry's lock. A write marks its id before it
+        //touches the map, so it either shows up in the check or lands after the sync is done with the entry.
+        int[] added = new int[1];
+        int[] updated = new int[1];
+        for (BeerDTO beer : remote.values()) {
+            beers.compute(beer.getId(), (id, previous) -> {
+                if (writtenSinceSync.contains(id) || previous != null && !isNewer(beer, previous)) {
+                    return previous;
+                }
+                if (previous == null) {
+                    added[0]++;
+                } else {
+                    updated[0]++;
+                }
+                reindex(previous, beer);
+                return beer;
+            });
+        }
+        //Only a full sync knows which beers are gone
+        int[] removed = new int[1];
+        if (full) {
+            for (UUID id : beers.keySet()) {
+                if (!remote.containsKey(id)) {
+                    beers.computeIfPresent(id, (key, previous) -> {
+                        if (writtenSinceSync.contains(key)) {
+                            return previous;
+                        }
+                        removed[0]++;
+                        reindex(previous, null);
+                        return null;
+                    });
+                }
+            }
+            lastFullSync = started;
+            newestUpdateDate = null;
+        }
+        for (BeerDTO beer : remote.values()) {
+            if (beer.getUpdateDate() != null && (newestUpdateDate == null || beer.getUpdateDate().isAfter(newestUpdateDate))) {
+                newestUpdateDate = beer.getUpdateDate();
+            }
+        }
+
+        changed |= added[0] + updated[0] + removed[0] > 0;
+        if (changed) {
+            changes("added").increment(added[0]);
+            changes("updated").increment(updated[0]);
+            changes("removed").increment(removed[0]);
+        }
+        lastSync = clock.instant();
+        stalenessBound = maxStaleness;
+        sample.stop(meterRegistry.timer(SYNC, "type", type, "outcome", "SUCCESS"));
+        log.debug("Beer replica {} sync, {} beers read, {} in the replica: {} added, {} updated, {} removed", type,
+                remote.size(), beers.size(), added[0], updated[0], removed[0]);
+
+        if (snapshotPath != null) {
+            writeSnapshot(changed);
+        }
+    }
+
+    //Loads the last snapshot so reads are served from the start, the first sync then catches up with the service
+    void restoreSnapshot() {
+        Timer.Sample sample = Timer.start(meterRegistry);
+        BeerCatalogSnapshot.Contents snapshot;
+        try {
+            snapshot = BeerCatalogSnapshot.read(snapshotPath);
+        } catch (IOException e) {
+            log.warn("Ignoring beer replica snapshot {}, starting empty", snapshotPath, e);
+            return;
+        }
+
+        for (BeerDTO beer : snapshot.beers()) {
+            if (beer.getId() != null) {
+                reindex(beers.put(beer.getId(), beer), beer);
+            }
+        }
+        lastSync = snapshot.syncedAt();
+        stalenessBound = maxStaleness.compareTo(snapshotMaxAge) >= 0 ? maxStaleness : snapshotMaxAge;
+        sample.stop(meterRegistry.timer(SNAPSHOT, "operation", "read"));
+        log.info("Restored {} beers from snapshot {}, synced at {}, last update {}", beers.size(), snapshotPath,
+                snapshot.syncedAt(), snapshot.maxUpdateDate());
+    }
+
+    //A catalogue unchanged by the sync and by writes only gets the sync time in the header updated instead of a full
+    //rewrite. The flag is cleared before the write, a write coming in meanwhile sets it again for the next sync.
+    private void writeSnapshot(boolean changed) {
+        boolean written = snapshotOutdated;
+        snapshotOutdated = false;
+        Timer.Sample sample = Timer.start(meterRegistry);
+        try {
+            if (changed || written || !BeerCatalogSnapshot.touch(snapshotPath, lastSync)) {
+                BeerCatalogSnapshot.write(snapshotPath, beers.values(), lastSync);
+            }
+            sample.stop(meterRegistry.timer(SNAPSHOT, "operation", "write"));
+        } catch (IOException e) {
+            if (written) {
+                snapshotOutdated = true;
+            }
+            log.warn("Could not write beer replica snapshot {}", snapshotPath, e);
+        }
+    }
+
+    private void syncQuietly() {
+        try {
+            sync();
+        } catch (RuntimeException e) {
+            //Keep serving what we have, reads go remote once it is older than maxStaleness
+            log.warn("Beer replica sync failed, last successful sync: {}", lastSync, e);
+        }
+    }
+
+    public boolean isFresh() {
+        Instant synced = lastSync;
+        return synced != null && Duration.between(synced, clock.instant()).compareTo(stalenessBound) <= 0;
+    }
+
+    //Time since the last successful sync, null before the first one
+    public Duration staleness() {
+        Instant synced = lastSync;
+        return synced == null ? null : Duration.between(synced, clock.instant());
+    }
+
+    @Override
+    public BeerDTO getBeerById(UUID beerId) {
+        if (!isFresh()) {
+            request("getBeerById", "stale").increment();
+            return delegate.getBeerById(beerId);
+        }
+
+        BeerDTO beer = beers.get(beerId);
+        if (beer != null) {
+            request("getBeerById", "hit").increment();
+            return copy(beer, true);
+        }
+
+        request("getBeerById", "miss").increment();
+        BeerDTO fetched = delegate.getBeerById(beerId);
+        apply(fetched);
+        return fetched;
+    }
+
+    @Override
+    public Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> beerIds) {
+        if (!isFresh()) {
+            request("getBeersByIds", "stale").increment();
+            return delegate.getBeersByIds(beerIds);
+        }
+
+        Map<UUID, BeerDTO> found = new LinkedHashMap<>();
+        List<UUID> misses = new ArrayList<>();
+        for (UUID beerId : beerIds) {
+            BeerDTO beer = beers.get(beerId);
+            if (beer != null) {
+                found.put(beerId, copy(beer, true));
+            } else {
+                misses.add(beerId);
+            }
+        }
+
+        request("getBeersByIds", misses.isEmpty() ? "hit" : "miss").increment();
+        if (!misses.isEmpty()) {
+            delegate.getBeersByIds(misses).values().forEach(beer -> found.put(beer.getId(), apply(beer)));
+        }
+        return found;
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers() {
+        return listBeers(null, null, null, null, null);
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        if (!isFresh()) {
+            request("listBeers", "stale").increment();
+            return delegate.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        }
+        request("listBeers", "hit").increment();
+        return page(beerName, beerStyle, showInventory, pageNumber, pageSize);
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize,
+                                   Consumer<BeerDTO> beerConsumer) {
+        if (!isFresh()) {
+            request("listBeers", "stale").increment();
+            return delegate.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize, beerConsumer);
+        }
+        request("listBeers", "hit").increment();
+        Page<BeerDTO> page = page(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        page.forEach(beerConsumer);
+        return new BeerDTOPageImpl<>(List.of(), page.getNumber(), page.getSize(), page.getTotalElements());
+    }
+
+    @Override
+    public BeerBatchPage listBeersCompact(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        if (!isFresh()) {
+            request("listBeersCompact", "stale").increment();
+            return delegate.listBeersCompact(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        }
+        request("listBeersCompact", "hit").increment();
+        Page<BeerDTO> page = page(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        return new BeerBatchPage(BeerBatch.of(page), page.getNumber(), page.getSize(), page.getTotalElements());
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize, int prefetchPages) {
+        if (!isFresh()) {
+            request("streamBeers", "stale").increment();
+            return delegate.streamBeers(beerName, beerStyle, showInventory, pageSize, prefetchPages);
+        }
+        request("streamBeers", "hit").increment();
+        boolean inventory = showInventory == null || showInventory;
+        return matching(index(beerStyle), beerName).map(beer -> copy(beer, inventory));
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize) {
+        return streamBeers(beerName, beerStyle, showInventory, pageSize, 1);
+    }
+
+    /**
+     * Beers whose name starts with prefix, ignoring case, in name order. Not part of the API, a stale replica
+     * streams the remote name filter and keeps the prefix matches.
+     */
+    public List<BeerDTO> findByNamePrefix(String prefix) {
+        String lowerCasePrefix = prefix.toLowerCase(Locale.ROOT);
+        if (!isFresh()) {
+            request("findByNamePrefix", "stale").increment();
+            try (Stream<BeerDTO> remote = delegate.streamBeers(prefix, null, true, syncPageSize)) {
+                return remote.filter(beer -> beer.getBeerName() != null
+                        && beer.getBeerName().toLowerCase(Locale.ROOT).startsWith(lowerCasePrefix)).toList();
+            }
+        }
+
+        request("findByNamePrefix", "hit").increment();
+        //Every name starting with the prefix sorts between the prefix and the prefix followed by the last char
+        return all.beers().subMap(Entry.bound(lowerCasePrefix), true, Entry.bound(lowerCasePrefix + Character.MAX_VALUE), false)
+                .values().stream()
+                .map(beer -> copy(beer, true))
+                .toList();
+    }
+
+    @Override
+    public BeerDTO createBeer(BeerDTO newDto) {
+        return apply(delegate.createBeer(newDto));
+    }
+
+    @Override
+    public BeerDTO createBeer(BeerDTO newDto, WriteResponseMode writeResponseMode) {
+        return apply(delegate.createBeer(newDto, writeResponseMode));
+    }
+
+    @Override
+    public BeerDTO updateBeer(BeerDTO beerDTO) {
+        return apply(delegate.updateBeer(beerDTO));
+    }
+
+    @Override
+    public BeerDTO updateBeer(BeerDTO beerDTO, WriteResponseMode writeResponseMode) {
+        return apply(delegate.updateBeer(beerDTO, writeResponseMode));
+    }
+
+    @Override
+    public void deleteBeer(UUID id) {
+        delegate.deleteBeer(id);
+        remove(id);
+    }
+
+    @Override
+    public List<BulkResult<BeerDTO>> createBeers(Collection<BeerDTO> newDtos) {
+        List<BulkResult<BeerDTO>> results = delegate.createBeers(newDtos);
+        results.stream().filter(BulkResult::isSuccess).forEach(result -> apply(result.value()));
+        return results;
+    }
+
+    @Override
+    public List<BulkResult<BeerDTO>> updateBeers(Collection<BeerDTO> beerDTOs) {
+        List<BulkResult<BeerDTO>> results = delegate.updateBeers(beerDTOs);
+        results.stream().filter(BulkResult::isSuccess).forEach(result -> apply(result.value()));
+        return results;
+    }
+
+    @Override
+    public List<BulkResult<UUID>> deleteBeers(Collection<UUID> ids) {
+        List<BulkResult<UUID>> results = delegate.deleteBeers(ids);
+        results.stream().filter(BulkResult::isSuccess).forEach(result -> remove(result.value()));
+        return results;
+    }
+
+    //Takes a beer the remote client returned into the replica, unless we already hold a newer version of it
+    private BeerDTO apply(BeerDTO beer) {
+        if (beer != null && beer.getId() != null) {
+            writtenSinceSync.add(beer.getId());
+            BeerDTO copy = copy(beer, true);
+            beers.compute(beer.getId(), (id, previous) -> {
+                if (previous != null && !isNewer(copy, previous)) {
+                    return previous;
+                }
+                reindex(previous, copy);
+                snapshotOutdated = true;
+                return copy;
+            });
+        }
+        return beer;
+    }
+
+    //Drops a beer deleted through us, a running sync may still have it in the pages it read
+    private void remove(UUID id) {
+        writtenSinceSync.add(id);
+        beers.computeIfPresent(id, (key, previous) -> {
+            reindex(previous, null);
+            snapshotOutdated = true;
+            return null;
+        });
+    }
+
+    private static boolean isNewer(BeerDTO beer, BeerDTO than) {
+        if (beer.getVersion() != null && than.getVersion() != null) {
+            return beer.getVersion() > than.getVersion();
+        }
+        if (beer.getUpdateDate() != null && than.getUpdateDate() != null) {
+            return beer.getUpdateDate().isAfter(than.getUpdateDate());
+        }
+        return !beer.equals(than);
+    }
+
+    private Page<BeerDTO> page(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        //pageNumber is 1-based like on the wire, a missing or non positive one is the first page
+        int page = pageNumber != null && pageNumber > 0 ? pageNumber - 1 : 0;
+        int size = pageSize == null ? DEFAULT_PAGE_SIZE : Math.min(pageSize, MAX_PAGE_SIZE);
+
+        //Like the beer service, showInventory=false zeroes the quantity, null shows it
+        boolean inventory = showInventory == null || showInventory;
+        NameIndex index = index(beerStyle);
+        List<BeerDTO> content = new ArrayList<>();
+        long total;
+        if (!StringUtils.hasText(beerName)) {
+            total = index.size();
+            index.beers().values().stream()
+                    .skip((long) page * size)
+                    .limit(size)
+                    .forEach(beer -> content.add(copy(beer, inventory)));
+        } else {
+            List<BeerDTO> matches = matching(index, beerName).toList();
+            total = matches.size();
+            int from = (int) Math.min((long) page * size, matches.size());
+            int to = Math.min(from + size, matches.size());
+            matches.subList(from, to).forEach(beer -> content.add(copy(beer, inventory)));
+        }
+        return new BeerDTOPageImpl<>(content, page, size, total);
+    }
+
+    private NameIndex index(BeerStyle beerStyle) {
+        return beerStyle == null ? all : byStyle.get(beerStyle);
+    }
+
+    //The beer service matches beerName anywhere in the name ignoring case, so it is a scan of the (style) index
+    private static Stream<BeerDTO> matching(NameIndex index, String beerName) {
+        if (!StringUtils.hasText(beerName)) {
+            return index.beers().values().stream();
+        }
+
+        String needle = beerName.toLowerCase(Locale.ROOT);
+        return index.beers().entrySet().stream()
+                .filter(entry -> entry.getKey().lowerCaseName().contains(needle))
+                .map(Map.Entry::getValue);
+    }
+
+    //Moves one beer in the name indexes, from previous to current, either may be null. Called inside the compute of
+    //its id, so the changes of a beer don't interleave. The new entry goes in before the old one is dropped: a reader
+    //may see a renamed beer twice for a moment, but never misses it.
+    private void reindex(BeerDTO previous, BeerDTO current) {
+        Entry removed = previous == null ? null : Entry.of(previous);
+        Entry added = current == null ? null : Entry.of(current);
+        BeerStyle previousStyle = previous == null ? null : previous.getBeerStyle();
+        BeerStyle currentStyle = current == null ? null : current.getBeerStyle();
+
+        all.update(removed, added, current);
+        if (previousStyle == currentStyle) {
+            if (currentStyle != null) {
+                byStyle.get(currentStyle).update(removed, added, current);
+            }
+        } else {
+            if (currentStyle != null) {
+                byStyle.get(currentStyle).update(null, added, current);
+            }
+            if (previousStyle != null) {
+                byStyle.get(previousStyle).update(removed, null, null);
+            }
+        }
+    }
+
+    private static BeerDTO copy(BeerDTO beer, boolean showInventory) {
+        BeerDTO copy = beer.toBuilder().build();
+        if (!showInventory) {
+            copy.setQuantityOnHand(0);
+        }
+        return copy;
+    }
+
+    private Counter request(String operation, String result) {
+        return meterRegistry.counter(REQUESTS, "operation", operation, "result", result);
+    }
+
+    private Counter changes(String type) {
+        return meterRegistry.counter(CHANGES, "type", type);
+    }
+
+    //Key of the name indexes, beers with the same name are ordered by id. A null id only comes up in the bounds of a
+    //prefix range, it sorts before every beer of the name.
+    private record Entry(String lowerCaseName, UUID id) {
+
+        static Entry of(BeerDTO beer) {
+            return new Entry(Objects.toString(beer.getBeerName(), "").toLowerCase(Locale.ROOT), beer.getId());
+        }
+
+        static Entry bound(String lowerCaseName) {
+            return new Entry(lowerCaseName, null);
+        }
+    }
+
+    //Beers in name order and how many there are, ConcurrentSkipListMap.size() would walk the whole map
+    private record NameIndex(ConcurrentSkipListMap<Entry, BeerDTO> beers, AtomicInteger count) {
+
+        NameIndex() {
+            this(new ConcurrentSkipListMap<>(NAME_ORDER), new AtomicInteger());
+        }
+
+        //An unchanged entry just gets the new beer
+        void update(Entry removed, Entry added, BeerDTO beer) {
+            if (added != null && beers.put(added, beer) == null) {
+                count.incrementAndGet();
+            }
+            if (removed != null && !removed.equals(added) && beers.remove(removed) != null) {
+                count.decrementAndGet();
+            }
+        }
+
+        int size() {
+            return count.get();
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Binary snapshot of the beers held by {@link BeerCatalogReplica}, written to and read from a memory-mapped file.
+ * <p>
+ * Layout, big endian: a header (magic, format version, the time of the sync the snapshot was taken after, the
+ * highest updateDate, the record count) followed by one record per beer. Strings are a length (-1 for null)
+ * plus their UTF-8 bytes, a null int is Integer.MIN_VALUE and a null timestamp Long.MIN_VALUE epoch seconds.
+ * Styles are stored by name and prices as their decimal string, so neither depends on the enum order and
+ * prices keep their scale.
+ * <p>
+ * A snapshot is written to a temporary file next to the target and moved over it, a reader never sees a half
+ * written one.
+ */
+final class BeerCatalogSnapshot {
+
+    private static final long MAGIC = 0x424545525F534E50L; //"BEER_SNP"
+    private static final int FORMAT_VERSION = 1;
+    private static final int HEADER_SIZE = 8 + 4 + 8 + 8 + 4 + 4;
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+
+    private BeerCatalogSnapshot() {
+    }
+
+    record Contents(List<BeerDTO> beers, Instant syncedAt, LocalDateTime maxUpdateDate) {
+    }
+
+    static void write(Path path, Collection<BeerDTO> beers, Instant syncedAt) throws IOException {
+        //Strings are encoded up front, the file is mapped at its exact size
+        List<EncodedBeer> encoded = new ArrayList<>(beers.size());
+        long size = HEADER_SIZE;
+        LocalDateTime maxUpdateDate = null;
+        for (BeerDTO beer : beers) {
+            EncodedBeer encodedBeer = EncodedBeer.of(beer);
+            encoded.add(encodedBeer);
+            size += encodedBeer.size();
+            if (beer.getUpdateDate() != null && (maxUpdateDate == null || beer.getUpdateDate().isAfter(maxUpdateDate))) {
+                maxUpdateDate = beer.getUpdateDate();
+            }
+        }
+        if (size > Integer.MAX_VALUE) {
+            throw new IOException("Snapshot of " + beers.size() + " beers exceeds the 2GB a mapped buffer can hold");
+        }
+
+        Path temporary = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buffer.putLong(MAGIC);
+            buffer.putInt(FORMAT_VERSION);
+            buffer.putLong(syncedAt.toEpochMilli());
+            putDateTime(buffer, maxUpdateDate);
+            buffer.putInt(encoded.size());
+            for (EncodedBeer encodedBeer : encoded) {
+                encodedBeer.writeTo(buffer);
+            }
+            buffer.force();
+        }
+        Files.move(temporary, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    //Only moves the sync time of an existing snapshot forward, false when there is no valid snapshot to update
+    static boolean touch(Path path, Instant syncedAt) throws IOException {
+        if (!Files.exists(path)) {
+            return false;
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            if (channel.size() < HEADER_SIZE) {
+                return false;
+            }
+            MappedByteBuffer header = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE);
+            if (header.getLong() != MAGIC || header.getInt() != FORMAT_VERSION) {
+                return false;
+            }
+            header.putLong(syncedAt.toEpochMilli());
+            header.force();
+            return true;
+        }
+    }
+
+    //Throws IOException for a file that isn't a snapshot of this format or is cut short
+    static Contents read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.remaining() < HEADER_SIZE || buffer.getLong() != MAGIC) {
+                throw new IOException(path + " is not a beer catalogue snapshot");
+            }
+            int formatVersion = buffer.getInt();
+            if (formatVersion != FORMAT_VERSION) {
+                throw new IOException("Unsupported snapshot format " + formatVersion + " in " + path);
+            }
+
+            Instant syncedAt = Instant.ofEpochMilli(buffer.getLong());
+            LocalDateTime maxUpdateDate = getDateTime(buffer);
+            int count = buffer.getInt();
+            List<BeerDTO> beers = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                beers.add(readBeer(buffer));
+            }
+            return new Contents(beers, syncedAt, maxUpdateDate);
+        } catch (BufferUnderflowException | IllegalArgumentException | DateTimeException e) {
+            throw new IOException("Corrupt beer catalogue snapshot " + path, e);
+        }
+    }
+
+    private static BeerDTO readBeer(ByteBuffer buffer) {
+        boolean hasId = buffer.get() != 0;
+        long mostSigBits = buffer.getLong();
+        long leastSigBits = buffer.getLong();
+        UUID id = hasId ? new UUID(mostSigBits, leastSigBits) : null;
+        int version = buffer.getInt();
+        String beerName = getString(buffer);
+        String beerStyle = getString(buffer);
+        String upc = getString(buffer);
+        int quantityOnHand = buffer.getInt();
+        String price = getString(buffer);
+        return BeerDTO.builder()
+                .id(id)
+                .version(version == NULL_INT ? null : version)
+                .beerName(beerName)
+                .beerStyle(beerStyle == null ? null : BeerStyle.valueOf(beerStyle))
+                .upc(upc)
+                .quantityOnHand(quantityOnHand == NULL_INT ? null : quantityOnHand)
+                .price(price == null ? null : new BigDecimal(price))
+                .createdDate(getDateTime(buffer))
+                .updateDate(getDateTime(buffer))
+                .build();
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        if (length == -1) {
+            return null;
+        }
+        if (length < 0 || length > buffer.remaining()) {
+            throw new BufferUnderflowException();
+        }
+        String value = StandardCharsets.UTF_8.decode(buffer.slice(buffer.position(), length)).toString();
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    private static LocalDateTime getDateTime(ByteBuffer buffer) {
+        long epochSecond = buffer.getLong();
+        int nanos = buffer.getInt();
+        return epochSecond == NULL_LONG ? null : LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+
+    private static void putDateTime(ByteBuffer buffer, LocalDateTime dateTime) {
+        buffer.putLong(dateTime == null ? NULL_LONG : dateTime.toEpochSecond(ZoneOffset.UTC));
+        buffer.putInt(dateTime == null ? 0 : dateTime.getNano());
+    }
+
+    private record EncodedBeer(BeerDTO beer, byte[] beerName, byte[] beerStyle, byte[] upc, byte[] price) {
+
+        static EncodedBeer of(BeerDTO beer) {
+            return new EncodedBeer(beer, bytes(beer.getBeerName()),
+                    bytes(beer.getBeerStyle() == null ? null : beer.getBeerStyle().name()),
+                    bytes(beer.getUpc()), bytes(beer.getPrice() == null ? null : beer.getPrice().toString()));
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? null : value.getBytes(StandardCharsets.UTF_8);
+        }
+
+        //id flag and longs, version, four strings, quantity, two timestamps
+        long size() {
+            return 1 + 16 + 4 + stringSize(beerName) + stringSize(beerStyle) + stringSize(upc) + 4
+                    + stringSize(price) + 2 * (8 + 4);
+        }
+
+        private static int stringSize(byte[] value) {
+            return 4 + (value == null ? 0 : value.length);
+        }
+
+        void writeTo(ByteBuffer buffer) {
+            buffer.put((byte) (beer.getId() == null ? 0 : 1));
+            buffer.putLong(beer.getId() == null ? 0 : beer.getId().getMostSignificantBits());
+            buffer.putLong(beer.getId() == null ? 0 : beer.getId().getLeastSignificantBits());
+            buffer.putInt(beer.getVersion() == null ? NULL_INT : beer.getVersion());
+            putString(buffer, beerName);
+            putString(buffer, beerStyle);
+            putString(buffer, upc);
+            buffer.putInt(beer.getQuantityOnHand() == null ? NULL_INT : beer.getQuantityOnHand());
+            putString(buffer, price);
+            putDateTime(buffer, beer.getCreatedDate());
+            putDateTime(buffer, beer.getUpdateDate());
+        }
+
+        private static void putString(ByteBuffer buffer, byte[] value) {
+            buffer.putInt(value == null ? -1 : value.length);
+            if (value != null) {
+                buffer.put(value);
+            }
+        }
+    }
+}
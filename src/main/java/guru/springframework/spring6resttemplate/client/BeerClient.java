@@ -1,10 +1,17 @@
 package guru.springframework.spring6resttemplate.client;
 
+import guru.springframework.spring6resttemplate.model.BeerBatchPage;
 import guru.springframework.spring6resttemplate.model.BeerDTO;
 import guru.springframework.spring6resttemplate.model.BeerStyle;
 import org.springframework.data.domain.Page;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 public interface BeerClient {
 
@@ -12,11 +19,46 @@ public interface BeerClient {
 
     Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize);
 
+    //Parses the page incrementally and hands every beer to beerConsumer, so a very large page is processed in
+    //constant memory. The returned page only carries the paging metadata, its content is empty.
+    Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize,
+                            Consumer<BeerDTO> beerConsumer);
+
+    //Same page as listBeers, with the beers stored column by column in a BeerBatch, which takes a fraction of the
+    //memory of a list of BeerDTOs. Meant for large pages that are kept around, see BeerBatch.
+    BeerBatchPage listBeersCompact(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize);
+
+    //Streams every beer matching the filters, reading one page ahead in the background
+    Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize);
+
+    //Same as above with a read-ahead window of prefetchPages pages, close the stream to stop early
+    Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize, int prefetchPages);
+
+    //Streams the beers updated at or after since, with their inventory, for a service that has a query parameter for
+    //it, set with rest.template.replica.updatedSinceParam. Throws UnsupportedOperationException when none is set.
+    Stream<BeerDTO> streamBeersUpdatedSince(LocalDateTime since, Integer pageSize);
+
     BeerDTO getBeerById(UUID beerId);
 
+    //Looks up many beers at once, keyed by id. Ids that don't exist are left out of the map.
+    Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> beerIds);
+
     BeerDTO createBeer(BeerDTO newDto);
 
+    //Like createBeer, overriding the configured WriteResponseMode for this call
+    BeerDTO createBeer(BeerDTO newDto, WriteResponseMode writeResponseMode);
+
     BeerDTO updateBeer(BeerDTO beerDTO);
 
+    BeerDTO updateBeer(BeerDTO beerDTO, WriteResponseMode writeResponseMode);
+
     void deleteBeer(UUID id);
+
+    //Bulk variants send their requests concurrently (up to a configured in-flight limit). The results are in
+    //input order and a failing item is reported in its BulkResult instead of failing the whole batch.
+    List<BulkResult<BeerDTO>> createBeers(Collection<BeerDTO> newDtos);
+
+    List<BulkResult<BeerDTO>> updateBeers(Collection<BeerDTO> beerDTOs);
+
+    List<BulkResult<UUID>> deleteBeers(Collection<UUID> ids);
 }
@@ -1,123 +1,447 @@
 package guru.springframework.spring6resttemplate.client;
 
 import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import guru.springframework.spring6resttemplate.model.BeerBatch;
+import guru.springframework.spring6resttemplate.model.BeerBatchPage;
 import guru.springframework.spring6resttemplate.model.BeerDTO;
 import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
 import guru.springframework.spring6resttemplate.model.BeerStyle;
-import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
+import org.springframework.http.HttpEntity;
 import org.springframework.http.HttpMethod;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.springframework.web.client.HttpClientErrorException;
 import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.UriComponentsBuilder;
 
 import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
-@RequiredArgsConstructor
 @Service
-public class BeerClientImpl implements BeerClient {
+public class BeerClientImpl implements BeerClient, DisposableBean {
 
-    //Spring Boot provides us with RestTemplateBuilder. It get pre-configured with sensible defaults.
-    private final RestTemplateBuilder restTemplateBuilder;
+    //RestTemplate is thread safe, so we build it once and share it between all calls.
+    //Building it per call would create new converters, interceptors and an unpooled request factory every time.
+    private final RestTemplate restTemplate;
+
+    //Requests are sent to ready made URIs, see BeerUris
+    private final BeerUris uris;
+
+    //Binds single beers for the streaming listBeers, taken from the RestTemplate's own Jackson converters.
+    //One per media type they read, JSON first, as that's what a response without Content-Type is read as.
+    private final Map<MediaType, ObjectReader> beerReaders;
+
+    //Fetches the read-ahead pages of streamBeers and runs the requests of bulk calls
+    private final ExecutorService workerExecutor;
 
     public static final String GET_BEER_PATH = "/api/v1/beer";
     public static final String GET_BEER_BY_ID_PATH = "/api/v1/beer/{beerId}";
 
+    //Number of pages streamBeers reads ahead when none is given
+    public static final int DEFAULT_PREFETCH_PAGES = 1;
+
+    //Threads of the worker pool. When they are all busy the caller runs the task itself, a bulk call then works
+    //through its items on the caller's thread and a read-ahead page is fetched before streamBeers goes on.
+    static final int MAX_WORKER_THREADS = 64;
+
+    //The beer service never returns more than 1000 beers per page
+    static final int MAX_IDS_PER_REQUEST = 1000;
+
+    //Default for createBeer/updateBeer, configurable with rest.template.writeResponseMode
+    @Value("${rest.template.writeResponseMode:RESPONSE_BODY}")
+    private WriteResponseMode writeResponseMode = WriteResponseMode.RESPONSE_BODY;
+
+    //Maximum number of requests a bulk call keeps in flight at once
+    @Value("${rest.template.bulk.maxInFlight:8}")
+    private int bulkMaxInFlight = 8;
+
+    //Query parameter of GET /api/v1/beer taking a comma separated list of ids, for a service that supports one.
+    //Empty means it doesn't, and getBeersByIds falls back to one GET per id.
+    @Value("${rest.template.batching.idsParam:}")
+    private String idsQueryParam = "";
+
+    //Query parameter of GET /api/v1/beer taking a timestamp, for a service that can list the beers updated since then.
+    //Empty means it can't, and streamBeersUpdatedSince is not supported.
+    @Value("${rest.template.replica.updatedSinceParam:}")
+    private String updatedSinceQueryParam = "";
+
+    //Spring Boot provides us with RestTemplateBuilder. It get pre-configured with sensible defaults.
+    public BeerClientImpl(RestTemplateBuilder restTemplateBuilder) {
+        this.restTemplate = restTemplateBuilder.build();
+        //The handler prepends the builder's rootUri, expanding an empty template gives us the root itself
+        this.uris = new BeerUris(restTemplate.getUriTemplateHandler().expand("").toString());
+        this.beerReaders = beerReaders(restTemplate);
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("beer-client-worker-");
+        threadFactory.setDaemon(true);
+        this.workerExecutor = new ThreadPoolExecutor(0, MAX_WORKER_THREADS, 60, TimeUnit.SECONDS,
+                new SynchronousQueue<>(), threadFactory, (task, executor) -> {
+                    //Unlike CallerRunsPolicy, a shut down pool still rejects, a dropped task would never complete
+                    if (executor.isShutdown()) {
+                        throw new RejectedExecutionException("Beer client is shut down");
+                    }
+                    task.run();
+                });
+    }
+
     @Override
-    public void deleteBeer(UUID id) {
+    public void destroy() {
+        workerExecutor.shutdownNow();
+    }
+
+    public WriteResponseMode getWriteResponseMode() {
+        return writeResponseMode;
+    }
+
+    public void setWriteResponseMode(WriteResponseMode writeResponseMode) {
+        this.writeResponseMode = writeResponseMode;
+    }
+
+    //Use the same ObjectMapper the RestTemplate converts JSON with, so both listBeers variants bind beers alike
+    private static ObjectMapper jsonObjectMapper(RestTemplate restTemplate) {
+        return restTemplate.getMessageConverters().stream()
+                .filter(MappingJackson2HttpMessageConverter.class::isInstance)
+                .map(converter -> ((MappingJackson2HttpMessageConverter) converter).getObjectMapper())
+                .findFirst()
+                .orElseGet(() -> Jackson2ObjectMapperBuilder.json().build());
+    }
+
+    //JSON, then the binary formats when rest.template.wireFormat put a CBOR or Smile converter in
+    private static Map<MediaType, ObjectReader> beerReaders(RestTemplate restTemplate) {
+        Map<MediaType, ObjectReader> readers = new LinkedHashMap<>();
+        readers.put(MediaType.APPLICATION_JSON, jsonObjectMapper(restTemplate).readerFor(BeerDTO.class));
+        for (HttpMessageConverter<?> converter : restTemplate.getMessageConverters()) {
+            if (converter instanceof AbstractJackson2HttpMessageConverter jackson
+                    && !(converter instanceof MappingJackson2HttpMessageConverter)) {
+                ObjectReader reader = jackson.getObjectMapper().readerFor(BeerDTO.class);
+                jackson.getSupportedMediaTypes().forEach(mediaType -> readers.putIfAbsent(mediaType, reader));
+            }
+        }
+        return readers;
+    }
+
+    private ObjectReader beerReader(MediaType contentType) {
+        if (contentType != null) {
+            for (Map.Entry<MediaType, ObjectReader> reader : beerReaders.entrySet()) {
+                if (reader.getKey().includes(contentType)) {
+                    return reader.getValue();
+                }
+            }
+        }
+        return beerReaders.get(MediaType.APPLICATION_JSON);
+    }
 
-        RestTemplate restTemplate = restTemplateBuilder.build();
+    //A 401 means the service rejected our token, OAuthClientInterceptor has dropped it by then and we try once more
+    //with a fresh one. The retry goes through every interceptor again, so it is timed, limited and counted like any
+    //other request.
+    private <T> T withTokenRetry(Supplier<T> call) {
+        try {
+            return call.get();
+        } catch (HttpClientErrorException.Unauthorized e) {
+            return call.get();
+        }
+    }
 
-        restTemplate.delete(GET_BEER_BY_ID_PATH, id);
+    @Override
+    public void deleteBeer(UUID id) {
+
+        withTokenRetry(() -> {
+            restTemplate.delete(uris.beer(id));
+            return null;
+        });
     }
 
     @Override
     public BeerDTO updateBeer(BeerDTO beerDTO) {
+        return updateBeer(beerDTO, writeResponseMode);
+    }
 
-        RestTemplate restTemplate = restTemplateBuilder.build();
+    @Override
+    public BeerDTO updateBeer(BeerDTO beerDTO, WriteResponseMode writeResponseMode) {
 
         UUID beerId = beerDTO.getId();
 
-        //Perform PUT operation to the Url path
-        //The beerId variable gets bind to our path variable
-        restTemplate.put(GET_BEER_BY_ID_PATH, beerDTO, beerId);
+        if (writeResponseMode == WriteResponseMode.FOLLOW_UP_GET) {
+            //Perform PUT operation to the Url path
+            //The beerId variable gets bind to our path variable
+            withTokenRetry(() -> {
+                restTemplate.put(uris.beer(beerId), beerDTO);
+                return null;
+            });
+
+            //Returns back the populated object
+            return getBeerById(beerId);
+        }
+
+        //exchange gives us the response body of the PUT, if the server sends the updated beer back we are done
+        ResponseEntity<BeerDTO> responseEntity = withTokenRetry(() -> restTemplate.exchange(uris.beer(beerId),
+                HttpMethod.PUT, new HttpEntity<>(beerDTO), BeerDTO.class));
 
-        //Returns back the populated object
+        if (responseEntity.getBody() != null) {
+            return responseEntity.getBody();
+        }
+
+        //Empty body (e.g. 204 No Content), fetch the populated object
         return getBeerById(beerId);
     }
 
 
     @Override
     public BeerDTO createBeer(BeerDTO newDto) {
+        return createBeer(newDto, writeResponseMode);
+    }
 
-        RestTemplate restTemplate = restTemplateBuilder.build();
+    @Override
+    public BeerDTO createBeer(BeerDTO newDto, WriteResponseMode writeResponseMode) {
+
+        if (writeResponseMode == WriteResponseMode.FOLLOW_UP_GET) {
+            //Create a new resource by POSTing the given object to the path, and returns the value of the Location header.
+            URI uri = withTokenRetry(() -> restTemplate.postForLocation(uris.beers(), newDto));
 
+            //We use the Location header from "response" to return back created BeerDTO object in the database
+            return withTokenRetry(() -> restTemplate.getForObject(uris.path(uri.getRawPath()), BeerDTO.class));
+        }
 
-        //Create a new resource by POSTing the given object to the path, and returns the value of the Location header.
-        URI uri = restTemplate.postForLocation(GET_BEER_PATH, newDto);
+        //postForEntity returns the Location header and the body together, saving the GET when the body is there
+        ResponseEntity<BeerDTO> responseEntity = withTokenRetry(() ->
+                restTemplate.postForEntity(uris.beers(), newDto, BeerDTO.class));
 
-        //We use the Location header from "response" to return back created BeerDTO object in the database
-        return  restTemplate.getForObject(uri.getPath(), BeerDTO.class);
+        if (responseEntity.getBody() != null) {
+            return responseEntity.getBody();
+        }
 
+        //Empty body, we use the Location header to fetch the created BeerDTO
+        URI location = uris.path(responseEntity.getHeaders().getLocation().getRawPath());
+        return withTokenRetry(() -> restTemplate.getForObject(location, BeerDTO.class));
     }
 
 
     @Override
-    public BeerDTO getBeerById(UUID beerId) {
+    public List<BulkResult<BeerDTO>> createBeers(Collection<BeerDTO> newDtos) {
+        return runBulk(newDtos, this::createBeer);
+    }
+
+    @Override
+    public List<BulkResult<BeerDTO>> updateBeers(Collection<BeerDTO> beerDTOs) {
+        return runBulk(beerDTOs, this::updateBeer);
+    }
 
-        RestTemplate restTemplate = restTemplateBuilder.build();
+    @Override
+    public List<BulkResult<UUID>> deleteBeers(Collection<UUID> ids) {
+        return runBulk(ids, id -> {
+            deleteBeer(id);
+            return id;
+        });
+    }
+
+    //Runs the operation for every item with up to bulkMaxInFlight requests in flight.
+    //Each worker takes the next item as soon as its previous request is done, so the pipe stays full.
+    //A failing item is recorded in its result and doesn't stop the others.
+    private <I, R> List<BulkResult<R>> runBulk(Collection<I> items, Function<I, R> operation) {
+        List<I> inputs = new ArrayList<>(items);
+        List<BulkResult<R>> results = new ArrayList<>(Collections.nCopies(inputs.size(), null));
+        AtomicInteger nextIndex = new AtomicInteger();
+
+        Runnable worker = () -> {
+            int index;
+            while ((index = nextIndex.getAndIncrement()) < inputs.size()) {
+                try {
+                    results.set(index, BulkResult.success(index, operation.apply(inputs.get(index))));
+                } catch (RuntimeException e) {
+                    results.set(index, BulkResult.failure(index, e));
+                }
+            }
+        };
+
+        int workers = Math.min(Math.max(1, bulkMaxInFlight), inputs.size());
+        CompletableFuture<?>[] running = new CompletableFuture<?>[workers];
+        for (int i = 0; i < workers; i++) {
+            running[i] = CompletableFuture.runAsync(worker, workerExecutor);
+        }
+
+        //Results are in input order, each worker only writes the slots it took
+        CompletableFuture.allOf(running).join();
+        return results;
+    }
+
+    public int getBulkMaxInFlight() {
+        return bulkMaxInFlight;
+    }
+
+    public void setBulkMaxInFlight(int bulkMaxInFlight) {
+        this.bulkMaxInFlight = bulkMaxInFlight;
+    }
+
+
+    @Override
+    public BeerDTO getBeerById(UUID beerId) {
 
         //.getForObject method Retrieve a BeerDTO.class by doing a GET on the id path
         //The beerId variable gets bind to our path variable
-        return restTemplate.getForObject(GET_BEER_BY_ID_PATH, BeerDTO.class, beerId);
+        return withTokenRetry(() -> restTemplate.getForObject(uris.beer(beerId), BeerDTO.class));
     }
 
 
-    //Overloaded method to List Beers with no query parameters
     @Override
-    public Page<BeerDTO> listBeers() {
-        return this.listBeers(null, null, null, null, null);
+    public Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> beerIds) {
+
+        List<UUID> ids = beerIds.stream().distinct().toList();
+        Map<UUID, BeerDTO> beers = new LinkedHashMap<>();
+
+        if (!StringUtils.hasText(idsQueryParam)) {
+            //No multi-id lookup, the ids go out as concurrent single GETs and a 404 just leaves the id out
+            List<BulkResult<BeerDTO>> results = runBulk(ids, this::getBeerById);
+            for (BulkResult<BeerDTO> result : results) {
+                if (result.isSuccess()) {
+                    beers.put(ids.get(result.index()), result.value());
+                } else if (!(result.error() instanceof HttpClientErrorException.NotFound)) {
+                    throw result.error();
+                }
+            }
+            return beers;
+        }
+
+        for (int from = 0; from < ids.size(); from += MAX_IDS_PER_REQUEST) {
+            List<UUID> chunk = ids.subList(from, Math.min(from + MAX_IDS_PER_REQUEST, ids.size()));
+            URI uri = uris.beersByIds(idsQueryParam, chunk);
+
+            //Only the beers we asked for are kept, in case the service ignores the parameter and sends a plain page
+            Set<UUID> requested = new HashSet<>(chunk);
+            Page<BeerDTO> page = getPage(uri);
+            if (page != null) {
+                page.filter(beer -> requested.contains(beer.getId())).forEach(beer -> beers.put(beer.getId(), beer));
+            }
+        }
+        return beers;
+    }
+
+    public String getIdsQueryParam() {
+        return idsQueryParam;
+    }
+
+    public void setIdsQueryParam(String idsQueryParam) {
+        this.idsQueryParam = idsQueryParam;
     }
 
     @Override
-    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+    public Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize) {
+        return streamBeers(beerName, beerStyle, showInventory, pageSize, DEFAULT_PREFETCH_PAGES);
+    }
 
-        //Get instance of RestTemplate using RestTemplateBuilder
-        RestTemplate restTemplate = restTemplateBuilder.build();
+    @Override
+    public Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize, int prefetchPages) {
+        return stream(pageNumber -> listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize), prefetchPages);
+    }
 
-        //UriComponentsBuilder allows us build the path to include the query parameters
-        //.fromPath method utilizes the Base Path we set in our configuration
-        UriComponentsBuilder uriComponentsBuilder = UriComponentsBuilder.fromPath(GET_BEER_PATH);
+    public String getUpdatedSinceQueryParam() {
+        return updatedSinceQueryParam;
+    }
 
-        //It will be an optional parameter
-        if(beerName != null) {
-            uriComponentsBuilder.queryParam("beerName", beerName);
-        }
-        if(beerStyle != null) {
-            uriComponentsBuilder.queryParam("beerStyle", beerStyle);
-        }
-        if(pageNumber != null) {
-            uriComponentsBuilder.queryParam("pageNumber", pageNumber);
-        }
-        if(pageSize != null) {
-            uriComponentsBuilder.queryParam("pageSize", pageSize);
-        }
-        if(showInventory != null) {
-            uriComponentsBuilder.queryParam("showInventory", showInventory);
+    public void setUpdatedSinceQueryParam(String updatedSinceQueryParam) {
+        this.updatedSinceQueryParam = updatedSinceQueryParam;
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeersUpdatedSince(LocalDateTime since, Integer pageSize) {
+        if (!StringUtils.hasText(updatedSinceQueryParam)) {
+            throw new UnsupportedOperationException("No query parameter for beers updated since a time, "
+                    + "set rest.template.replica.updatedSinceParam");
         }
+        return stream(pageNumber -> getPage(uris.beersUpdatedSince(updatedSinceQueryParam, since, pageNumber, pageSize)),
+                DEFAULT_PREFETCH_PAGES);
+    }
+
+    //The iterator pulls the pages, holding at most prefetchPages pages besides the current one
+    private Stream<BeerDTO> stream(IntFunction<Page<BeerDTO>> pageFetcher, int prefetchPages) {
+        BeerPageIterator iterator = new BeerPageIterator(pageFetcher, prefetchPages, workerExecutor);
+
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(iterator,
+                        Spliterator.ORDERED | Spliterator.NONNULL), false)
+                .onClose(iterator::close);
+    }
+
+    //BeerDTOPageImpl is a page of beers whatever its type argument, so the wildcard takes the class literal unchecked-free
+    private Page<BeerDTO> getPage(URI uri) {
+        BeerDTOPageImpl<?> page = withTokenRetry(() -> restTemplate.getForObject(uri, BeerDTOPageImpl.class));
+        return page;
+    }
+
+    //Overloaded method to List Beers with no query parameters
+    @Override
+    public Page<BeerDTO> listBeers() {
+        return this.listBeers(null, null, null, null, null);
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
 
         //Response entity gives us everything in the response
         //We use PageImpl instead of Page, bcz Page  is an interface not a hard implementation
+        URI uri = uris.beers(beerName, beerStyle, showInventory, pageNumber, pageSize);
         ResponseEntity<BeerDTOPageImpl> pageResponseEntity =
-                restTemplate.getForEntity(uriComponentsBuilder.toUriString(), BeerDTOPageImpl.class);
+                withTokenRetry(() -> restTemplate.getForEntity(uri, BeerDTOPageImpl.class));
 
         return pageResponseEntity.getBody();
     }
 
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize,
+                                   Consumer<BeerDTO> beerConsumer) {
+
+        //Instead of a message converter, the extractor parses the body as it arrives and passes on one beer at a time.
+        //A 401 is thrown before the extractor runs, so a retry doesn't hand any beer to the consumer twice.
+        URI uri = uris.beers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+        return withTokenRetry(() -> restTemplate.execute(uri, HttpMethod.GET,
+                restTemplate.acceptHeaderRequestCallback(BeerDTOPageImpl.class),
+                new BeerDTOPageExtractor(this::beerReader, beerConsumer)));
+    }
+
+    @Override
+    public BeerBatchPage listBeersCompact(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+
+        //The streaming listBeers hands over one beer at a time, each is packed into the batch and dropped right away
+        BeerBatch.Builder batch = BeerBatch.builder();
+        Page<BeerDTO> page = listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize, batch::add);
+
+        return new BeerBatchPage(batch.build(), page.getNumber(), page.getSize(), page.getTotalElements());
+    }
+
 
 }
@@ -0,0 +1,81 @@
+package guru.springframework.spring6resttemplate.client;
+
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectReader;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
+import org.springframework.data.domain.Page;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.ResponseExtractor;
+import org.springframework.web.client.RestClientException;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Reads a beer page response token by token. Every element of the "content" array is bound
+ * to a BeerDTO and handed to the consumer straight away, so the whole list is never held in memory.
+ * The returned page only carries the paging metadata, its content is empty.
+ * <p>
+ * The reader is picked by the response's Content-Type, a page can come as JSON, CBOR or Smile.
+ */
+class BeerDTOPageExtractor implements ResponseExtractor<Page<BeerDTO>> {
+
+    private final Function<MediaType, ObjectReader> beerReaders;
+    private final Consumer<BeerDTO> beerConsumer;
+
+    BeerDTOPageExtractor(Function<MediaType, ObjectReader> beerReaders, Consumer<BeerDTO> beerConsumer) {
+        this.beerReaders = beerReaders;
+        this.beerConsumer = beerConsumer;
+    }
+
+    @Override
+    public Page<BeerDTO> extractData(ClientHttpResponse response) throws IOException {
+        int number = 0;
+        int size = 0;
+        long totalElements = 0;
+
+        ObjectReader beerReader = beerReaders.apply(response.getHeaders().getContentType());
+        try (JsonParser parser = beerReader.createParser(response.getBody())) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new RestClientException("Expected a beer page object but got " + parser.currentToken());
+            }
+
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                parser.nextToken();
+
+                switch (fieldName) {
+                    case "content" -> readContent(beerReader, parser);
+                    case "number" -> number = parser.getValueAsInt();
+                    case "size" -> size = parser.getValueAsInt();
+                    case "totalElements" -> totalElements = parser.getValueAsLong();
+                    default -> parser.skipChildren(); //pageable, sort and the other fields we don't need
+                }
+            }
+        } catch (IOException e) {
+            //Same wrapping HttpMessageConverterExtractor does for the regular listBeers
+            throw new RestClientException("Error while extracting response for type [" + BeerDTOPageImpl.class.getName() + "]", e);
+        }
+
+        return new BeerDTOPageImpl<>(Collections.emptyList(), number, size, totalElements);
+    }
+
+    private void readContent(ObjectReader beerReader, JsonParser parser) throws IOException {
+        if (parser.currentToken() != JsonToken.START_ARRAY) {
+            parser.skipChildren();
+            return;
+        }
+
+        JsonToken token;
+        while ((token = parser.nextToken()) != JsonToken.END_ARRAY) {
+            if (token == JsonToken.START_OBJECT) {
+                beerConsumer.accept(beerReader.readValue(parser));
+            }
+        }
+    }
+}
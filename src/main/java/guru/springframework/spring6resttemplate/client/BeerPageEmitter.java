@@ -0,0 +1,98 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import org.springframework.data.domain.Page;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * Reactive counterpart of BeerPageIterator. Beers are emitted only as far as the subscriber has requested them,
+ * and the next page is fetched only once the current one is used up and there is outstanding demand.
+ * Reactor's concatMap subscribes to the next page (which sends the request) ahead of demand, hence the hand-written loop.
+ * <p>
+ * Page numbers passed to the fetcher are 1-based, like the pageNumber query parameter of the beer service.
+ */
+class BeerPageEmitter {
+
+    private final FluxSink<BeerDTO> sink;
+    private final IntFunction<Mono<Page<BeerDTO>>> pageFetcher;
+
+    //Serializes drain(), which runs on the subscriber's thread for requests and on the event loop for pages
+    private final AtomicInteger wip = new AtomicInteger();
+
+    //Handed over from the event loop to the drain loop
+    private volatile Page<BeerDTO> arrived;
+    private volatile Disposable inFlight;
+
+    //Only touched inside the drain loop
+    private Iterator<BeerDTO> current = Collections.emptyIterator();
+    private int nextPageNumber = 1;
+    private boolean fetching;
+    private boolean lastPage;
+    private boolean done;
+
+    private BeerPageEmitter(FluxSink<BeerDTO> sink, IntFunction<Mono<Page<BeerDTO>>> pageFetcher) {
+        this.sink = sink;
+        this.pageFetcher = pageFetcher;
+    }
+
+    static Flux<BeerDTO> flux(IntFunction<Mono<Page<BeerDTO>>> pageFetcher) {
+        return Flux.create(sink -> {
+            BeerPageEmitter emitter = new BeerPageEmitter(sink, pageFetcher);
+            sink.onRequest(n -> emitter.drain());
+            sink.onDispose(emitter::dispose);
+        });
+    }
+
+    private void drain() {
+        if (wip.getAndIncrement() != 0) {
+            return;
+        }
+
+        int missed = 1;
+        do {
+            Page<BeerDTO> page = arrived;
+            if (page != null) {
+                arrived = null;
+                fetching = false;
+                current = page.getContent().iterator();
+                lastPage = page.isLast() || !page.hasContent();
+            }
+
+            while (!done && sink.requestedFromDownstream() > 0 && current.hasNext() && !sink.isCancelled()) {
+                sink.next(current.next());
+            }
+
+            if (!done && !fetching && !current.hasNext()) {
+                if (lastPage) {
+                    done = true;
+                    sink.complete();
+                } else if (sink.requestedFromDownstream() > 0 && !sink.isCancelled()) {
+                    fetching = true;
+                    inFlight = pageFetcher.apply(nextPageNumber++)
+                            .defaultIfEmpty(Page.empty())
+                            .subscribe(next -> {
+                                arrived = next;
+                                drain();
+                            }, sink::error);
+                }
+            }
+
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    private void dispose() {
+        Disposable request = inFlight;
+        if (request != null) {
+            request.dispose();
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import org.springframework.data.domain.Page;
+
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.function.IntFunction;
+
+/**
+ * Walks every page of a listBeers query. While the caller consumes page N, the next
+ * prefetchPages pages are fetched in the background, so at most that many pages
+ * (plus the current one) are held in memory however large the catalogue is.
+ * <p>
+ * Page numbers passed to the fetcher are 1-based, like the pageNumber query parameter of the beer service.
+ */
+class BeerPageIterator implements Iterator<BeerDTO>, AutoCloseable {
+
+    private final IntFunction<Page<BeerDTO>> pageFetcher;
+    private final int prefetchPages;
+    private final Executor executor;
+
+    //Pages already requested but not consumed yet, in page order
+    private final Deque<CompletableFuture<Page<BeerDTO>>> window = new ArrayDeque<>();
+
+    private Iterator<BeerDTO> current = Collections.emptyIterator();
+    private int nextPageNumber = 1;
+    private int totalPages = -1; //Unknown until the first page arrives
+    private long totalElements = -1;
+    private long delivered;
+    private boolean closed;
+
+    BeerPageIterator(IntFunction<Page<BeerDTO>> pageFetcher, int prefetchPages, Executor executor) {
+        if (prefetchPages < 0) {
+            throw new IllegalArgumentException("prefetchPages must not be negative");
+        }
+        this.pageFetcher = pageFetcher;
+        this.prefetchPages = prefetchPages;
+        this.executor = executor;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (!current.hasNext()) {
+            if (closed || delivered == totalElements || (totalPages >= 0 && nextPageNumber > totalPages && window.isEmpty())) {
+                return false;
+            }
+
+            Page<BeerDTO> page = nextPage();
+            if (!page.hasContent()) {
+                //Server returned less than it announced, nothing more to read
+                close();
+                return false;
+            }
+            current = page.getContent().iterator();
+        }
+        return delivered != totalElements;
+    }
+
+    @Override
+    public BeerDTO next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        delivered++;
+        return current.next();
+    }
+
+    //Drops the pages still being fetched, their results are simply discarded
+    @Override
+    public void close() {
+        closed = true;
+        current = Collections.emptyIterator();
+        window.forEach(future -> future.cancel(false));
+        window.clear();
+    }
+
+    private Page<BeerDTO> nextPage() {
+        Page<BeerDTO> page;
+
+        if (totalPages < 0) {
+            //First page is fetched on the caller thread, it tells us how many pages there are
+            page = pageFetcher.apply(nextPageNumber++);
+            totalPages = page.getTotalPages();
+            totalElements = page.getTotalElements();
+        } else if (window.isEmpty()) {
+            //No read-ahead configured, fetch the page on demand
+            page = pageFetcher.apply(nextPageNumber++);
+        } else {
+            page = join(window.poll());
+        }
+
+        //Keep the read-ahead window full while the caller works through this page
+        while (window.size() < prefetchPages && nextPageNumber <= totalPages) {
+            int pageNumber = nextPageNumber++;
+            window.add(CompletableFuture.supplyAsync(() -> pageFetcher.apply(pageNumber), executor));
+        }
+
+        return page;
+    }
+
+    private static Page<BeerDTO> join(CompletableFuture<Page<BeerDTO>> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.springframework.web.util.UriUtils;
+
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.UUID;
+
+import static guru.springframework.spring6resttemplate.client.BeerClientImpl.GET_BEER_PATH;
+
+/**
+ * Absolute URIs of the beer endpoints, built without going through the RestTemplate's URI template handler.
+ * A String URL is parsed as a template, expanded and encoded again on every call, a URI is sent as it is.
+ * <p>
+ * Everything fixed is computed once: the root plus paths, the query parameter prefixes and the encoded
+ * beerStyle of every style. A query string is appended to a per thread StringBuilder, and only a beerName with
+ * characters outside the unreserved set goes through {@link UriUtils#encodeQueryParam}. The query parameters
+ * come in the order listBeers always used, encoded once like UriComponentsBuilder encodes them.
+ */
+public final class BeerUris {
+
+    private static final String[] STYLE_PARAMS = new String[BeerStyle.values().length];
+
+    static {
+        for (BeerStyle style : BeerStyle.values()) {
+            STYLE_PARAMS[style.ordinal()] = "beerStyle=" + UriUtils.encodeQueryParam(style.name(), StandardCharsets.UTF_8);
+        }
+    }
+
+    //Long enough for every parameter with a beer name of a few dozen characters, it grows if needed
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(256));
+
+    private final String root;
+    private final String beersUrl;
+    private final URI beersUri;
+    private final String beerByIdPrefix;
+
+    //rootUri without a trailing slash, as set with RestTemplateBuilder.rootUri
+    public BeerUris(String rootUri) {
+        this.root = rootUri;
+        this.beersUrl = rootUri + GET_BEER_PATH;
+        this.beersUri = URI.create(beersUrl);
+        this.beerByIdPrefix = beersUrl + "/";
+    }
+
+    public URI beers() {
+        return beersUri;
+    }
+
+    public URI beer(UUID beerId) {
+        //A UUID is hex digits and dashes only, nothing to encode
+        return URI.create(beerByIdPrefix + beerId);
+    }
+
+    //A path of this service, e.g. from a Location header, which is encoded already
+    public URI path(String path) {
+        return URI.create(root + path);
+    }
+
+    public URI beers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        if (beerName == null && beerStyle == null && showInventory == null && pageNumber == null && pageSize == null) {
+            return beersUri;
+        }
+
+        StringBuilder url = builder();
+        if (beerName != null) {
+            appendEncoded(separator(url).append("beerName="), beerName);
+        }
+        if (beerStyle != null) {
+            separator(url).append(STYLE_PARAMS[beerStyle.ordinal()]);
+        }
+        if (pageNumber != null) {
+            separator(url).append("pageNumber=").append(pageNumber.intValue());
+        }
+        if (pageSize != null) {
+            separator(url).append("pageSize=").append(pageSize.intValue());
+        }
+        if (showInventory != null) {
+            separator(url).append(showInventory ? "showInventory=true" : "showInventory=false");
+        }
+        return URI.create(url.toString());
+    }
+
+    //The list endpoint filtered to the given ids with idsParam, all of them on one page with their inventory
+    public URI beersByIds(String idsParam, Collection<UUID> beerIds) {
+        StringBuilder url = builder().append('?');
+        appendEncoded(url, idsParam);
+        url.append('=');
+        String separator = "";
+        for (UUID beerId : beerIds) {
+            url.append(separator).append(beerId);
+            separator = ",";
+        }
+        url.append("&showInventory=true&pageSize=").append(beerIds.size());
+        return URI.create(url.toString());
+    }
+
+    //The list endpoint filtered to the beers updated at or after since with updatedSinceParam, with their inventory.
+    //since is sent in ISO-8601, the way the service writes updateDate.
+    public URI beersUpdatedSince(String updatedSinceParam, LocalDateTime since, int pageNumber, Integer pageSize) {
+        StringBuilder url = builder().append('?');
+        appendEncoded(url, updatedSinceParam);
+        url.append('=');
+        appendEncoded(url, since.toString());
+        url.append("&pageNumber=").append(pageNumber);
+        if (pageSize != null) {
+            url.append("&pageSize=").append(pageSize.intValue());
+        }
+        url.append("&showInventory=true");
+        return URI.create(url.toString());
+    }
+
+    private StringBuilder builder() {
+        StringBuilder url = BUILDER.get();
+        if (url.capacity() > 4096) {
+            //Don't keep the buffer of a large getBeersByIds around
+            url = new StringBuilder(256);
+            BUILDER.set(url);
+        }
+        url.setLength(0);
+        return url.append(beersUrl);
+    }
+
+    private StringBuilder separator(StringBuilder url) {
+        return url.append(url.length() == beersUrl.length() ? '?' : '&');
+    }
+
+    private static void appendEncoded(StringBuilder url, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isUnreserved(value.charAt(i))) {
+                url.append(UriUtils.encodeQueryParam(value, StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        url.append(value);
+    }
+
+    private static boolean isUnreserved(char c) {
+        return c >= 'a' && c <= 'z' || c >= 'A' && c <= 'Z' || c >= '0' && c <= '9'
+                || c == '-' || c == '.' || c == '_' || c == '~';
+    }
+}
@@ -0,0 +1,18 @@
+package guru.springframework.spring6resttemplate.client;
+
+//Outcome of one item of a bulk call. index is the item's position in the input collection,
+//either value (the saved beer, or the id for deletes) or error is set.
+public record BulkResult<T>(int index, T value, RuntimeException error) {
+
+    public static <T> BulkResult<T> success(int index, T value) {
+        return new BulkResult<>(index, value, null);
+    }
+
+    public static <T> BulkResult<T> failure(int index, RuntimeException error) {
+        return new BulkResult<>(index, null, error);
+    }
+
+    public boolean isSuccess() {
+        return error == null;
+    }
+}
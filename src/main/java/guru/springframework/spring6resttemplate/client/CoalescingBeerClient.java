@@ -0,0 +1,99 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.springframework.data.domain.Page;
+
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * Collapses identical concurrent reads into one upstream request (single-flight).
+ * While a getBeerById or listBeers call for a key is in flight, other callers with the same key
+ * wait for it and get the same result, or the same exception, instead of sending their own request.
+ * <p>
+ * Callers of one flight share the returned objects, so they should treat them as read only.
+ */
+public class CoalescingBeerClient extends DelegatingBeerClient {
+
+    private final ConcurrentMap<UUID, CompletableFuture<BeerDTO>> beersInFlight = new ConcurrentHashMap<>();
+    private final ConcurrentMap<ListKey, CompletableFuture<Page<BeerDTO>>> pagesInFlight = new ConcurrentHashMap<>();
+
+    private final LongAdder upstreamCalls = new LongAdder();
+    private final LongAdder collapsedCalls = new LongAdder();
+
+    public CoalescingBeerClient(BeerClient delegate) {
+        super(delegate);
+    }
+
+    @Override
+    public BeerDTO getBeerById(UUID beerId) {
+        return coalesce(beersInFlight, beerId, () -> delegate.getBeerById(beerId));
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers() {
+        return listBeers(null, null, null, null, null);
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        return coalesce(pagesInFlight, new ListKey(beerName, beerStyle, showInventory, pageNumber, pageSize),
+                () -> delegate.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize));
+    }
+
+    //Requests actually sent to the delegate
+    public long getUpstreamCalls() {
+        return upstreamCalls.sum();
+    }
+
+    //Calls answered by joining a request that was already in flight
+    public long getCollapsedCalls() {
+        return collapsedCalls.sum();
+    }
+
+    private <K, T> T coalesce(ConcurrentMap<K, CompletableFuture<T>> inFlight, K key, Supplier<T> call) {
+        CompletableFuture<T> flight = new CompletableFuture<>();
+        CompletableFuture<T> existing = inFlight.putIfAbsent(key, flight);
+
+        if (existing != null) {
+            collapsedCalls.increment();
+            return join(existing);
+        }
+
+        //We are the leader for this key, run the call and publish its outcome to the followers
+        upstreamCalls.increment();
+        try {
+            T result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private static <T> T join(CompletableFuture<T> flight) {
+        try {
+            return flight.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw e;
+        }
+    }
+
+    private record ListKey(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+    }
+}
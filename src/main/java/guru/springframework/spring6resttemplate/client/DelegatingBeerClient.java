@@ -0,0 +1,111 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerBatchPage;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.springframework.data.domain.Page;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//Base class for BeerClient decorators, forwards every call to the wrapped client.
+//Subclasses only override the operations they change.
+public abstract class DelegatingBeerClient implements BeerClient {
+
+    protected final BeerClient delegate;
+
+    protected DelegatingBeerClient(BeerClient delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers() {
+        return delegate.listBeers();
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        return delegate.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize);
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize,
+                                   Consumer<BeerDTO> beerConsumer) {
+        return delegate.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize, beerConsumer);
+    }
+
+    @Override
+    public BeerBatchPage listBeersCompact(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        return delegate.listBeersCompact(beerName, beerStyle, showInventory, pageNumber, pageSize);
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize) {
+        return delegate.streamBeers(beerName, beerStyle, showInventory, pageSize);
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize, int prefetchPages) {
+        return delegate.streamBeers(beerName, beerStyle, showInventory, pageSize, prefetchPages);
+    }
+
+    @Override
+    public Stream<BeerDTO> streamBeersUpdatedSince(LocalDateTime since, Integer pageSize) {
+        return delegate.streamBeersUpdatedSince(since, pageSize);
+    }
+
+    @Override
+    public BeerDTO getBeerById(UUID beerId) {
+        return delegate.getBeerById(beerId);
+    }
+
+    @Override
+    public Map<UUID, BeerDTO> getBeersByIds(Collection<UUID> beerIds) {
+        return delegate.getBeersByIds(beerIds);
+    }
+
+    @Override
+    public BeerDTO createBeer(BeerDTO newDto) {
+        return delegate.createBeer(newDto);
+    }
+
+    @Override
+    public BeerDTO createBeer(BeerDTO newDto, WriteResponseMode writeResponseMode) {
+        return delegate.createBeer(newDto, writeResponseMode);
+    }
+
+    @Override
+    public BeerDTO updateBeer(BeerDTO beerDTO) {
+        return delegate.updateBeer(beerDTO);
+    }
+
+    @Override
+    public BeerDTO updateBeer(BeerDTO beerDTO, WriteResponseMode writeResponseMode) {
+        return delegate.updateBeer(beerDTO, writeResponseMode);
+    }
+
+    @Override
+    public void deleteBeer(UUID id) {
+        delegate.deleteBeer(id);
+    }
+
+    @Override
+    public List<BulkResult<BeerDTO>> createBeers(Collection<BeerDTO> newDtos) {
+        return delegate.createBeers(newDtos);
+    }
+
+    @Override
+    public List<BulkResult<BeerDTO>> updateBeers(Collection<BeerDTO> beerDTOs) {
+        return delegate.updateBeers(beerDTOs);
+    }
+
+    @Override
+    public List<BulkResult<UUID>> deleteBeers(Collection<UUID> ids) {
+        return delegate.deleteBeers(ids);
+    }
+}
@@ -0,0 +1,374 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.TimeGauge;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.data.domain.Page;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged getBeerById and listBeers, for a p99 dominated by the occasional slow replica of the beer service. When
+ * the delegate hasn't answered within the hedge delay, the same call is sent a second time, whichever answers first
+ * wins and the other is cancelled. Opt-in with rest.template.hedging.enabled=true, it then becomes the BeerClient
+ * and wraps the batching client when that is enabled, BeerClientImpl otherwise, see BeerClientConfig. The replica,
+ * when enabled, stays the BeerClient and nothing is hedged.
+ * <p>
+ * The delay is the delayPercentile of the last WINDOW_SIZE latencies of the operation, kept between minDelay and
+ * maxDelay, and maxDelay until MIN_SAMPLES calls are in. A cancelled attempt counts with the time it had run.
+ * A budget keeps hedges to budgetRatio of the calls: every call saves budgetRatio of a hedge, a hedge spends a whole
+ * one and at most MAX_SAVED_HEDGES are saved up. An overloaded service gets slower for every request, so the delay
+ * follows the latencies up and the budget caps whatever hedges are still sent, hedging never adds more than
+ * budgetRatio to the load.
+ * <p>
+ * Only these reads are hedged, writes and the listBeers with a consumer go straight to the delegate. A call failing
+ * before the delay isn't hedged, retries are the resilience interceptor's job. Once hedged, the first successful
+ * answer wins and the call only fails when both attempts did, with the exception of the first one.
+ * <p>
+ * Both attempts run on the client's own threads while the caller waits, which costs a thread hand-off per call.
+ * There are at most maxThreads of them. When they are all busy a call runs on the caller's thread and isn't hedged,
+ * a hedge that finds no thread isn't sent and its budget is refunded, both count as saturated.
+ * The loser is interrupted and its requests aborted through {@link RequestCancellation}, an HTTP/1.1 request can
+ * only be aborted with its connection.
+ */
+@Service
+@ConditionalOnExpression("${rest.template.hedging.enabled:false} and !${rest.template.replica.enabled:false}")
+public class HedgingBeerClient extends DelegatingBeerClient implements DisposableBean {
+
+    static final String HEDGES = "beer.client.hedge.requests";
+    static final String DELAY = "beer.client.hedge.delay";
+
+    static final int WINDOW_SIZE = 1000;
+    static final int MIN_SAMPLES = 20;
+    //The percentile is recomputed after this many new latencies, sorting the window every call would be wasteful
+    static final int RECOMPUTE_EVERY = 50;
+    static final int MAX_SAVED_HEDGES = 10;
+
+    //Hedges are counted in millionths, so budgetRatio doesn't need to divide one
+    private static final long HEDGE_COST = 1_000_000;
+
+    private final double delayPercentile;
+    private final long minDelayNanos;
+    private final long maxDelayNanos;
+    private final long budgetPerCall;
+    private final MeterRegistry meterRegistry;
+    private final ExecutorService executor;
+
+    private final LatencyWindow getBeerLatencies;
+    private final LatencyWindow listBeersLatencies;
+
+    //Starts full, so the slow calls right after startup can be hedged as well
+    private final AtomicLong budget = new AtomicLong(MAX_SAVED_HEDGES * HEDGE_COST);
+
+    @Autowired
+    public HedgingBeerClient(BeerClientImpl beerClientImpl, ObjectProvider<BatchingBeerClient> batchingBeerClient,
+                             ObjectProvider<MeterRegistry> meterRegistry,
+                             @Value("${rest.template.hedging.delayPercentile:95}") double delayPercentile,
+                             @Value("${rest.template.hedging.minDelay:5ms}") Duration minDelay,
+                             @Value("${rest.template.hedging.maxDelay:500ms}") Duration maxDelay,
+                             @Value("${rest.template.hedging.budgetRatio:0.05}") double budgetRatio,
+                             @Value("${rest.template.hedging.maxThreads:64}") int maxThreads) {
+        this(Objects.requireNonNullElse(batchingBeerClient.getIfAvailable(), beerClientImpl),
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry), delayPercentile, minDelay, maxDelay,
+                budgetRatio, maxThreads);
+    }
+
+    public HedgingBeerClient(BeerClient delegate, MeterRegistry meterRegistry, double delayPercentile,
+                             Duration minDelay, Duration maxDelay, double budgetRatio, int maxThreads) {
+        super(delegate);
+        this.delayPercentile = delayPercentile;
+        this.minDelayNanos = minDelay.toNanos();
+        this.maxDelayNanos = maxDelay.toNanos();
+        this.budgetPerCall = Math.round(budgetRatio * HEDGE_COST);
+        this.meterRegistry = meterRegistry;
+        this.getBeerLatencies = new LatencyWindow();
+        this.listBeersLatencies = new LatencyWindow();
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("beer-client-hedge-");
+        threadFactory.setDaemon(true);
+        //No queue, an attempt that would wait for a thread is better off on the caller's
+        this.executor = new ThreadPoolExecutor(0, maxThreads, 60, TimeUnit.SECONDS, new SynchronousQueue<>(),
+                threadFactory);
+
+        TimeGauge.builder(DELAY, getBeerLatencies, TimeUnit.NANOSECONDS, window -> window.delayNanos())
+                .tag("operation", "getBeerById")
+                .register(meterRegistry);
+        TimeGauge.builder(DELAY, listBeersLatencies, TimeUnit.NANOSECONDS, window -> window.delayNanos())
+                .tag("operation", "listBeers")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        executor.shutdownNow();
+    }
+
+    @Override
+    public BeerDTO getBeerById(UUID beerId) {
+        return hedge("getBeerById", getBeerLatencies, () -> delegate.getBeerById(beerId));
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers() {
+        return listBeers(null, null, null, null, null);
+    }
+
+    @Override
+    public Page<BeerDTO> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        return hedge("listBeers", listBeersLatencies,
+                () -> delegate.listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize));
+    }
+
+    //Current hedge delay of getBeerById
+    Duration getBeerByIdDelay() {
+        return Duration.ofNanos(getBeerLatencies.delayNanos());
+    }
+
+    private <T> T hedge(String operation, LatencyWindow latencies, Supplier<T> call) {
+        saveHedge(budgetPerCall);
+
+        HedgedCall<T> hedgedCall = new HedgedCall<>(call);
+        Attempt<T> primary;
+        try {
+            primary = hedgedCall.start(latencies);
+        } catch (RejectedExecutionException e) {
+            meterRegistry.counter(HEDGES, "operation", operation, "outcome", "saturated").increment();
+            return call.get();
+        }
+
+        try {
+            return hedgedCall.winner.get(latencies.delayNanos(), TimeUnit.NANOSECONDS);
+        } catch (TimeoutException e) {
+            //Too slow, hedged below
+        } catch (ExecutionException e) {
+            throw unwrap(e.getCause());
+        } catch (InterruptedException e) {
+            primary.cancel();
+            Thread.currentThread().interrupt();
+            throw new CancellationException("Interrupted while waiting for " + operation);
+        }
+
+        String outcome;
+        synchronized (hedgedCall) {
+            if (hedgedCall.winner.isDone()) {
+                outcome = null; //Answered or failed while we timed out, nothing to hedge
+            } else if (!spendHedge()) {
+                outcome = "overBudget";
+            } else {
+                try {
+                    hedgedCall.start(null);
+                    outcome = "hedged";
+                } catch (RejectedExecutionException e) {
+                    saveHedge(HEDGE_COST);
+                    outcome = "saturated";
+                }
+            }
+        }
+
+        try {
+            return hedgedCall.await();
+        } finally {
+            //hedgeWon, primaryWon (also when both failed), overBudget or saturated
+            if (outcome != null) {
+                if (outcome.equals("hedged")) {
+                    outcome = hedgedCall.hedgeWon ? "hedgeWon" : "primaryWon";
+                }
+                meterRegistry.counter(HEDGES, "operation", operation, "outcome", outcome).increment();
+            }
+        }
+    }
+
+    private void saveHedge(long amount) {
+        budget.accumulateAndGet(amount, (saved, add) -> Math.min(saved + add, MAX_SAVED_HEDGES * HEDGE_COST));
+    }
+
+    private boolean spendHedge() {
+        long saved;
+        do {
+            saved = budget.get();
+            if (saved < HEDGE_COST) {
+                return false;
+            }
+        } while (!budget.compareAndSet(saved, saved - HEDGE_COST));
+        return true;
+    }
+
+    private static RuntimeException unwrap(Throwable cause) {
+        if (cause instanceof RuntimeException runtimeException) {
+            return runtimeException;
+        }
+        if (cause instanceof Error error) {
+            throw error;
+        }
+        return new CompletionException(cause);
+    }
+
+    //The attempts of one call. The first success wins, the call fails once every attempt started so far failed,
+    //with the first exception. A primary failing before the hedge is started fails the call on its own.
+    private final class HedgedCall<T> {
+
+        private final Supplier<T> call;
+        private final CompletableFuture<T> winner = new CompletableFuture<>();
+        private final List<Attempt<T>> attempts = new ArrayList<>(2);
+        private int failures;
+        private Throwable firstFailure;
+        private volatile boolean hedgeWon;
+
+        HedgedCall(Supplier<T> call) {
+            this.call = call;
+        }
+
+        //Only the primary's latencies are recorded, a hedge is started late and says nothing about the service
+        synchronized Attempt<T> start(LatencyWindow latencies) {
+            //Added once it's running, an attempt the executor rejected isn't waited for
+            Attempt<T> attempt = new Attempt<>(this, latencies, !attempts.isEmpty());
+            attempt.start();
+            attempts.add(attempt);
+            return attempt;
+        }
+
+        synchronized void succeeded(Attempt<T> attempt, T value) {
+            if (!winner.isDone()) {
+                hedgeWon = attempt.hedge;
+                winner.complete(value);
+            }
+        }
+
+        synchronized void failed(Throwable e) {
+            if (firstFailure == null) {
+                firstFailure = e;
+            }
+            if (++failures == attempts.size()) {
+                winner.completeExceptionally(firstFailure);
+            }
+        }
+
+        T await() {
+            try {
+                return winner.join();
+            } catch (CompletionException e) {
+                throw unwrap(e.getCause());
+            } finally {
+                //A no-op for the attempt that won
+                List<Attempt<T>> started;
+                synchronized (this) {
+                    started = List.copyOf(attempts);
+                }
+                started.forEach(Attempt::cancel);
+            }
+        }
+    }
+
+    //One call of the delegate on the executor
+    private final class Attempt<T> {
+
+        private final HedgedCall<T> hedgedCall;
+        private final LatencyWindow latencies;
+        private final boolean hedge;
+        private final RequestCancellation cancellation = new RequestCancellation();
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private long start;
+        private Future<?> future;
+
+        Attempt(HedgedCall<T> hedgedCall, LatencyWindow latencies, boolean hedge) {
+            this.hedgedCall = hedgedCall;
+            this.latencies = latencies;
+            this.hedge = hedge;
+        }
+
+        void start() {
+            start = System.nanoTime();
+            future = executor.submit(this::run);
+        }
+
+        private void run() {
+            cancellation.begin();
+            try {
+                T value = hedgedCall.call.get();
+                if (finish()) {
+                    hedgedCall.succeeded(this, value);
+                }
+            } catch (RuntimeException | Error e) {
+                if (finish()) {
+                    hedgedCall.failed(e);
+                }
+            } finally {
+                cancellation.end();
+            }
+        }
+
+        //Aborts the requests of an attempt still running, it counts with the time it had run. Interrupted first, so
+        //the interceptors see the failing read of the aborted request as a cancellation, not as an I/O error.
+        void cancel() {
+            if (finish()) {
+                future.cancel(true);
+                cancellation.cancel();
+            }
+        }
+
+        private boolean finish() {
+            if (!finished.compareAndSet(false, true)) {
+                return false;
+            }
+            if (latencies != null) {
+                latencies.record(System.nanoTime() - start);
+            }
+            return true;
+        }
+    }
+
+    //The last WINDOW_SIZE latencies of one operation and the hedge delay taken from them
+    private final class LatencyWindow {
+
+        private final long[] samples = new long[WINDOW_SIZE];
+        private int count;
+        private int next;
+        private int sinceRecompute;
+        private volatile long delayNanos = maxDelayNanos;
+
+        synchronized void record(long nanos) {
+            samples[next] = nanos;
+            next = (next + 1) % samples.length;
+            count = Math.min(count + 1, samples.length);
+            if (count >= MIN_SAMPLES && (++sinceRecompute >= RECOMPUTE_EVERY || count == MIN_SAMPLES)) {
+                sinceRecompute = 0;
+                long[] sorted = Arrays.copyOf(samples, count);
+                Arrays.sort(sorted);
+                long percentile = sorted[Math.min(count - 1, Math.max(0, (int) Math.ceil(delayPercentile / 100 * count) - 1))];
+                delayNanos = Math.max(minDelayNanos, Math.min(maxDelayNanos, percentile));
+            }
+        }
+
+        long delayNanos() {
+            return delayNanos;
+        }
+    }
+}
@@ -0,0 +1,26 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.springframework.data.domain.Page;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.UUID;
+
+//Reactive mirror of BeerClient on WebClient, nothing is sent until the result is subscribed to
+public interface ReactiveBeerClient {
+
+    Mono<Page<BeerDTO>> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize);
+
+    //Every beer matching the filters. A page is only fetched once the subscriber has requested more beers than the pages so far held.
+    Flux<BeerDTO> listAllBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize);
+
+    Mono<BeerDTO> getBeerById(UUID beerId);
+
+    Mono<BeerDTO> createBeer(BeerDTO newDto);
+
+    Mono<BeerDTO> updateBeer(BeerDTO beerDTO);
+
+    Mono<Void> deleteBeer(UUID id);
+}
@@ -0,0 +1,98 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.data.domain.Page;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.util.UriBuilder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.URI;
+import java.util.Optional;
+import java.util.UUID;
+
+import static guru.springframework.spring6resttemplate.client.BeerClientImpl.GET_BEER_BY_ID_PATH;
+import static guru.springframework.spring6resttemplate.client.BeerClientImpl.GET_BEER_PATH;
+
+@Service
+public class ReactiveBeerClientImpl implements ReactiveBeerClient {
+
+    //Configured with the root URL and the OAuth filter in WebClientConfig. Reactor Netty runs every call
+    //on its shared event loop, so thousands of reads in flight don't need a thread each.
+    private final WebClient webClient;
+
+    public ReactiveBeerClientImpl(@Qualifier("beerWebClient") WebClient webClient) {
+        this.webClient = webClient;
+    }
+
+    @Override
+    public Mono<Page<BeerDTO>> listBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        return webClient.get()
+                .uri(uriBuilder -> listBeersUri(uriBuilder, beerName, beerStyle, showInventory, pageNumber, pageSize))
+                .retrieve()
+                .bodyToMono(BeerDTOPageImpl.class)
+                .map(page -> (Page<BeerDTO>) page);
+    }
+
+    @Override
+    public Flux<BeerDTO> listAllBeers(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageSize) {
+
+        //A page is requested only when the subscriber wants more beers than the previous page had
+        return BeerPageEmitter.flux(pageNumber -> listBeers(beerName, beerStyle, showInventory, pageNumber, pageSize));
+    }
+
+    @Override
+    public Mono<BeerDTO> getBeerById(UUID beerId) {
+        return webClient.get()
+                .uri(GET_BEER_BY_ID_PATH, beerId)
+                .retrieve()
+                .bodyToMono(BeerDTO.class);
+    }
+
+    @Override
+    public Mono<BeerDTO> createBeer(BeerDTO newDto) {
+
+        //Same as BeerClientImpl: use the body if the server sends one, otherwise follow the Location header
+        return webClient.post()
+                .uri(GET_BEER_PATH)
+                .bodyValue(newDto)
+                .retrieve()
+                .toEntity(BeerDTO.class)
+                .flatMap(entity -> entity.getBody() != null ? Mono.just(entity.getBody())
+                        : webClient.get().uri(entity.getHeaders().getLocation().getPath()).retrieve().bodyToMono(BeerDTO.class));
+    }
+
+    @Override
+    public Mono<BeerDTO> updateBeer(BeerDTO beerDTO) {
+        return webClient.put()
+                .uri(GET_BEER_BY_ID_PATH, beerDTO.getId())
+                .bodyValue(beerDTO)
+                .retrieve()
+                .bodyToMono(BeerDTO.class)
+                .switchIfEmpty(Mono.defer(() -> getBeerById(beerDTO.getId())));
+    }
+
+    @Override
+    public Mono<Void> deleteBeer(UUID id) {
+        return webClient.delete()
+                .uri(GET_BEER_BY_ID_PATH, id)
+                .retrieve()
+                .bodyToMono(Void.class);
+    }
+
+    //Same query parameters, in the same order, as the RestTemplate listBeers
+    private static URI listBeersUri(UriBuilder uriBuilder, String beerName, BeerStyle beerStyle, Boolean showInventory,
+                                    Integer pageNumber, Integer pageSize) {
+        return uriBuilder.path(GET_BEER_PATH)
+                .queryParamIfPresent("beerName", Optional.ofNullable(beerName))
+                .queryParamIfPresent("beerStyle", Optional.ofNullable(beerStyle))
+                .queryParamIfPresent("pageNumber", Optional.ofNullable(pageNumber))
+                .queryParamIfPresent("pageSize", Optional.ofNullable(pageSize))
+                .queryParamIfPresent("showInventory", Optional.ofNullable(showInventory))
+                .build();
+    }
+}
@@ -0,0 +1,63 @@
+package guru.springframework.spring6resttemplate.client;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Lets a BeerClient call running on one thread be cancelled from another, down to its HTTP requests. An interrupt
+ * doesn't reach a request blocked in a socket read of Apache HttpClient's classic I/O, aborting the request does.
+ * The request factory hands every request it creates to onCancel, which keeps its abort for the cancellable call
+ * running on the current thread, if there is one.
+ * <p>
+ * Used by HedgingBeerClient, an HTTP/1.1 request can only be cancelled by closing its connection.
+ */
+public final class RequestCancellation {
+
+    private static final ThreadLocal<RequestCancellation> CURRENT = new ThreadLocal<>();
+
+    private final List<Runnable> aborts = new ArrayList<>();
+    private boolean cancelled;
+
+    RequestCancellation() {
+    }
+
+    //Every request created on this thread until end() is aborted by cancel(), also when it was cancelled already
+    void begin() {
+        CURRENT.set(this);
+    }
+
+    void end() {
+        CURRENT.remove();
+    }
+
+    //Outside of a cancellable call it does nothing. A request created after the cancel is aborted right away.
+    public static void onCancel(Runnable abort) {
+        RequestCancellation cancellation = CURRENT.get();
+        if (cancellation != null) {
+            cancellation.add(abort);
+        }
+    }
+
+    private void add(Runnable abort) {
+        synchronized (aborts) {
+            if (!cancelled) {
+                aborts.add(abort);
+                return;
+            }
+        }
+        abort.run();
+    }
+
+    void cancel() {
+        List<Runnable> toRun;
+        synchronized (aborts) {
+            if (cancelled) {
+                return;
+            }
+            cancelled = true;
+            toRun = new ArrayList<>(aborts);
+            aborts.clear();
+        }
+        toRun.forEach(Runnable::run);
+    }
+}
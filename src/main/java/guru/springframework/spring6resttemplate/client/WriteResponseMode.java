@@ -0,0 +1,11 @@
+package guru.springframework.spring6resttemplate.client;
+
+//How createBeer and updateBeer get hold of the saved beer they return
+public enum WriteResponseMode {
+
+    //Read the saved beer from the POST/PUT response body, and only GET it when the body is empty
+    RESPONSE_BODY,
+
+    //Always GET the beer after writing it, costs a second round trip
+    FOLLOW_UP_GET
+}
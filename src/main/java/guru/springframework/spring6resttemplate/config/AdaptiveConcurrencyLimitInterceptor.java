@@ -0,0 +1,322 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.RestClientException;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.time.Duration;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Caps the requests in flight per target host with a limit that adapts to how the host copes (AIMD):
+ * <ul>
+ *     <li>a request that is answered in time while the limit is at least half used grows the limit by 1/limit,
+ *     so about one per round trip of a full window</li>
+ *     <li>an I/O error, a 429 or 503, or a round trip longer than rttTolerance times the long term average
+ *     shrinks it by backoffRatio</li>
+ * </ul>
+ * A request over the limit waits up to maxWait for a permit, with at most maxQueue requests waiting per host,
+ * and is rejected with {@link LimitExceededException} otherwise.
+ * <p>
+ * A request holds its permit until its response is closed, after the message converters read the body, and its round
+ * trip is measured up to then. A large page takes most of its time in the body transfer.
+ * <p>
+ * Goes right before the ResilienceInterceptor, so a call holds its permit across its retries. Exposes
+ * beer.client.limit, beer.client.limit.inflight and beer.client.limit.rejected, tagged with the host.
+ */
+public class AdaptiveConcurrencyLimitInterceptor implements ClientHttpRequestInterceptor {
+
+    static final String LIMIT = "beer.client.limit";
+    static final String IN_FLIGHT = "beer.client.limit.inflight";
+    static final String REJECTED = "beer.client.limit.rejected";
+
+    //Weight of a new sample in the long term RTT average, about the last 100 requests count
+    private static final double RTT_SMOOTHING = 0.01;
+
+    private final MeterRegistry meterRegistry;
+    private final int initialLimit;
+    private final int minLimit;
+    private final int maxLimit;
+    private final double backoffRatio;
+    private final double rttTolerance;
+    private final long maxWaitNanos;
+    private final int maxQueue;
+
+    private final ConcurrentMap<String, HostLimit> hostLimits = new ConcurrentHashMap<>();
+
+    public AdaptiveConcurrencyLimitInterceptor(MeterRegistry meterRegistry, int initialLimit, int minLimit, int maxLimit,
+                                               double backoffRatio, double rttTolerance, Duration maxWait, int maxQueue) {
+        this.meterRegistry = meterRegistry;
+        this.initialLimit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.backoffRatio = backoffRatio;
+        this.rttTolerance = rttTolerance;
+        this.maxWaitNanos = maxWait.toNanos();
+        this.maxQueue = maxQueue;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+
+        HostLimit hostLimit = hostLimits.computeIfAbsent(request.getURI().getAuthority(), this::newHostLimit);
+        hostLimit.acquire();
+
+        long start = System.nanoTime();
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException e) {
+            //A cancelled request, interrupted and aborted, says nothing about the host either
+            boolean cancelled = Thread.currentThread().isInterrupted();
+            hostLimit.release(!cancelled, cancelled ? -1 : 0);
+            throw e;
+        } catch (RuntimeException | Error e) {
+            //E.g. an open circuit breaker, says nothing about the host's capacity
+            hostLimit.release(false, -1);
+            throw e;
+        }
+
+        int status;
+        try {
+            status = response.getStatusCode().value();
+        } catch (IOException | RuntimeException | Error e) {
+            //No status line to judge the host by, counts like an I/O error of the request
+            try {
+                response.close();
+            } finally {
+                hostLimit.release(true, 0);
+            }
+            throw e;
+        }
+        boolean overloaded = status == HttpStatus.TOO_MANY_REQUESTS.value() || status == HttpStatus.SERVICE_UNAVAILABLE.value();
+        return new PermitReleasingResponse(response, hostLimit, overloaded, start);
+    }
+
+    //Current limit of a host, for tests and diagnostics
+    public int getLimit(String authority) {
+        HostLimit hostLimit = hostLimits.get(authority);
+        return hostLimit == null ? initialLimit : hostLimit.currentLimit();
+    }
+
+    private HostLimit newHostLimit(String authority) {
+        HostLimit hostLimit = new HostLimit(meterRegistry.counter(REJECTED, "host", authority));
+        Gauge.builder(LIMIT, hostLimit, HostLimit::currentLimit)
+                .description("Requests allowed in flight to the host")
+                .tag("host", authority)
+                .register(meterRegistry);
+        Gauge.builder(IN_FLIGHT, hostLimit, HostLimit::currentInFlight)
+                .tag("host", authority)
+                .register(meterRegistry);
+        return hostLimit;
+    }
+
+    /**
+     * Thrown when a request found no permit within maxWait, or the queue of waiting requests was full.
+     */
+    public static class LimitExceededException extends RestClientException {
+
+        public LimitExceededException(String message) {
+            super(message);
+        }
+    }
+
+    //Gives the permit back on close, a body that failed to read counts like an I/O error of the request
+    private static class PermitReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final HostLimit hostLimit;
+        private final boolean overloaded;
+        private final long start;
+        private InputStream body;
+        private boolean bodyFailed;
+        private boolean released;
+
+        PermitReleasingResponse(ClientHttpResponse response, HostLimit hostLimit, boolean overloaded, long start) {
+            this.response = response;
+            this.hostLimit = hostLimit;
+            this.overloaded = overloaded;
+            this.start = start;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        @Deprecated
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new FilterInputStream(response.getBody()) {
+                    @Override
+                    public int read() throws IOException {
+                        try {
+                            return super.read();
+                        } catch (IOException e) {
+                            bodyFailed = true;
+                            throw e;
+                        }
+                    }
+
+                    @Override
+                    public int read(byte[] b, int off, int len) throws IOException {
+                        try {
+                            return super.read(b, off, len);
+                        } catch (IOException e) {
+                            bodyFailed = true;
+                            throw e;
+                        }
+                    }
+                };
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (!released) {
+                    released = true;
+                    if (bodyFailed) {
+                        //Cancelled, the body of a hedged call that lost, says nothing about the host
+                        boolean cancelled = Thread.currentThread().isInterrupted();
+                        hostLimit.release(!cancelled, -1);
+                    } else {
+                        hostLimit.release(overloaded, System.nanoTime() - start);
+                    }
+                }
+            }
+        }
+    }
+
+    private class HostLimit {
+
+        private final ReentrantLock lock = new ReentrantLock();
+        private final Condition permitReleased = lock.newCondition();
+        private final Counter rejected;
+
+        private double limit = initialLimit;
+        private double averageRttNanos;
+        private int inFlight;
+        private int waiting;
+
+        HostLimit(Counter rejected) {
+            this.rejected = rejected;
+        }
+
+        void acquire() throws InterruptedIOException {
+            lock.lock();
+            try {
+                if (inFlight < (int) limit) {
+                    inFlight++;
+                    return;
+                }
+                if (waiting >= maxQueue || maxWaitNanos <= 0) {
+                    throw reject();
+                }
+
+                waiting++;
+                try {
+                    long remaining = maxWaitNanos;
+                    while (inFlight >= (int) limit) {
+                        if (remaining <= 0) {
+                            throw reject();
+                        }
+                        remaining = permitReleased.awaitNanos(remaining);
+                    }
+                    inFlight++;
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for a request permit");
+                } finally {
+                    waiting--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        //rttNanos is -1 for a request that doesn't tell anything about the host
+        void release(boolean overloaded, long rttNanos) {
+            lock.lock();
+            try {
+                int usedBefore = inFlight;
+                inFlight--;
+
+                if (overloaded) {
+                    limit = Math.max(minLimit, limit * backoffRatio);
+                } else if (rttNanos >= 0) {
+                    averageRttNanos = averageRttNanos == 0 ? rttNanos
+                            : averageRttNanos + RTT_SMOOTHING * (rttNanos - averageRttNanos);
+                    if (rttNanos > rttTolerance * averageRttNanos) {
+                        limit = Math.max(minLimit, limit * backoffRatio);
+                    } else if (usedBefore * 2 >= limit) {
+                        limit = Math.min(maxLimit, limit + 1 / limit);
+                    }
+                }
+
+                //A grown limit can let more than one waiting request through
+                permitReleased.signalAll();
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private LimitExceededException reject() {
+            rejected.increment();
+            return new LimitExceededException("Concurrency limit of " + (int) limit + " requests reached");
+        }
+
+        int currentLimit() {
+            lock.lock();
+            try {
+                return (int) limit;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        int currentInFlight() {
+            lock.lock();
+            try {
+                return inFlight;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.fasterxml.jackson.annotation.JsonFormat;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.converter.smile.MappingJackson2SmileHttpMessageConverter;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.List;
+import java.util.UUID;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * CBOR or Smile converter of the beer client, on the same Boot builder, Blackbird and warm up as BeerJsonConverter.
+ * It goes in front of the JSON converter, so Accept lists the binary type first and JSON after it, and request
+ * bodies are written in the binary format. A server without the format answers in JSON and the JSON converter
+ * reads it.
+ * <p>
+ * It is also the interceptor taking care of request bodies the server refuses: on a 415 for a binary body it sends
+ * the same body again as JSON and writes every later body as JSON right away. UUIDs are written as strings, as in
+ * the JSON contract, so the binary tree converts to the same JSON the JSON converter would write. Jackson would
+ * otherwise write them as 16 raw bytes, which only Jackson reads back as a UUID.
+ */
+@Slf4j
+public class BeerBinaryConverter extends AbstractJackson2HttpMessageConverter implements ClientHttpRequestInterceptor {
+
+    private final BeerWireFormat wireFormat;
+    private final ObjectMapper jsonMapper;
+
+    //Cleared for good on the first 415, the client talks to one beer service
+    private volatile boolean binaryRequests = true;
+
+    public BeerBinaryConverter(BeerWireFormat wireFormat, Jackson2ObjectMapperBuilder objectMapperBuilder,
+                               ObjectMapper jsonMapper) {
+        super(binaryMapper(wireFormat, objectMapperBuilder), wireFormat.getMediaType());
+        this.wireFormat = wireFormat;
+        this.jsonMapper = jsonMapper;
+    }
+
+    private static ObjectMapper binaryMapper(BeerWireFormat wireFormat, Jackson2ObjectMapperBuilder objectMapperBuilder) {
+        if (wireFormat == BeerWireFormat.JSON) {
+            throw new IllegalArgumentException("JSON is written by BeerJsonConverter");
+        }
+        ObjectMapper objectMapper = objectMapperBuilder.factory(wireFormat.newFactory()).build();
+        objectMapper.configOverride(UUID.class).setFormat(JsonFormat.Value.forShape(JsonFormat.Shape.STRING));
+        return BeerObjectMappers.warmedUp(objectMapper);
+    }
+
+    public BeerWireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    //False once the beer service turned a binary body down
+    public boolean isBinaryRequests() {
+        return binaryRequests;
+    }
+
+    @Override
+    public boolean canWrite(Class<?> clazz, MediaType mediaType) {
+        return binaryRequests && super.canWrite(clazz, mediaType);
+    }
+
+    //Puts this converter in front of the JSON one
+    void addBeforeJsonConverter(RestTemplate restTemplate) {
+        List<HttpMessageConverter<?>> converters = restTemplate.getMessageConverters();
+        for (int i = 0; i < converters.size(); i++) {
+            if (converters.get(i) instanceof MappingJackson2HttpMessageConverter) {
+                converters.add(i, this);
+                return;
+            }
+        }
+        converters.add(this);
+    }
+
+    //Spring adds its own CBOR and Smile converters when the dataformats are on the classpath. They would put both types
+    //in every Accept header, even with the wire format left at JSON, so the beer client goes without them.
+    static void removeDefaultBinaryConverters(RestTemplate restTemplate) {
+        restTemplate.getMessageConverters().removeIf(converter -> converter instanceof MappingJackson2CborHttpMessageConverter
+                || converter instanceof MappingJackson2SmileHttpMessageConverter);
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+
+        ClientHttpResponse response = execution.execute(request, body);
+        if (response.getStatusCode() != HttpStatus.UNSUPPORTED_MEDIA_TYPE
+                || !wireFormat.getMediaType().isCompatibleWith(request.getHeaders().getContentType())) {
+            return response;
+        }
+
+        String contentEncoding = request.getHeaders().getFirst(HttpHeaders.CONTENT_ENCODING);
+        if (contentEncoding != null && !contentEncoding.equalsIgnoreCase("gzip")) {
+            return response;
+        }
+
+        if (binaryRequests) {
+            binaryRequests = false;
+            log.warn("{} rejected a {} body, beer request bodies are sent as JSON from now on",
+                    request.getURI().getAuthority(), wireFormat);
+        }
+        response.close();
+
+        //Sent as plain JSON, it was the server's content types we got wrong, not its encodings.
+        //Exact decimals, the default node factory would strip the trailing zeros of prices.
+        JsonNode tree = getObjectMapper().reader().with(JsonNodeFactory.withExactBigDecimals(true))
+                .readTree(contentEncoding != null ? gunzip(body) : body);
+        byte[] json = jsonMapper.writeValueAsBytes(tree);
+        request.getHeaders().remove(HttpHeaders.CONTENT_ENCODING);
+        request.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+        request.getHeaders().setContentLength(json.length);
+        return execution.execute(request, json);
+    }
+
+    private static byte[] gunzip(byte[] body) throws IOException {
+        try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            return gzip.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package guru.springframework.spring6resttemplate.config;
+
+import guru.springframework.spring6resttemplate.client.BatchingBeerClient;
+import guru.springframework.spring6resttemplate.client.BeerClient;
+import guru.springframework.spring6resttemplate.client.HedgingBeerClient;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+
+import java.util.Objects;
+
+@Configuration
+public class BeerClientConfig {
+
+    //The opt-in decorators are chained as hedging -> batching -> BeerClientImpl, each one wrapping the next enabled
+    //one, and the outermost is the BeerClient. The replica is the BeerClient on its own, neither decorator is created.
+    @Primary
+    @Bean
+    @ConditionalOnExpression("(${rest.template.hedging.enabled:false} or ${rest.template.batching.enabled:false})"
+            + " and !${rest.template.replica.enabled:false}")
+    BeerClient decoratedBeerClient(ObjectProvider<HedgingBeerClient> hedgingBeerClient,
+                                   ObjectProvider<BatchingBeerClient> batchingBeerClient) {
+        return Objects.requireNonNullElseGet(hedgingBeerClient.getIfAvailable(), batchingBeerClient::getObject);
+    }
+}
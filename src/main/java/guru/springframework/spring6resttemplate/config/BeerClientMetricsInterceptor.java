@@ -0,0 +1,202 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.util.UriTemplate;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+import static guru.springframework.spring6resttemplate.client.BeerClientImpl.GET_BEER_BY_ID_PATH;
+import static guru.springframework.spring6resttemplate.client.BeerClientImpl.GET_BEER_PATH;
+
+/**
+ * Records a timer per URI template, method and status for every request the BeerClient sends,
+ * plus the request and response body sizes.
+ * <p>
+ * The uri tag is the template the request path matches, e.g. /api/v1/beer/{beerId}, never the expanded URI,
+ * so the number of time series stays bounded. Paths matching no known template are tagged "UNKNOWN".
+ */
+public class BeerClientMetricsInterceptor implements ClientHttpRequestInterceptor {
+
+    static final String REQUESTS = "beer.client.requests";
+    static final String REQUEST_SIZE = "beer.client.request.size";
+    static final String RESPONSE_SIZE = "beer.client.response.size";
+    static final String UNKNOWN_URI = "UNKNOWN";
+
+    //Most specific template first
+    private static final List<UriTemplate> URI_TEMPLATES = List.of(
+            new UriTemplate(GET_BEER_BY_ID_PATH),
+            new UriTemplate(GET_BEER_PATH));
+
+    private final MeterRegistry meterRegistry;
+
+    public BeerClientMetricsInterceptor(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+
+        Tags tags = Tags.of("uri", uriTemplate(request.getURI().getPath()), "method", request.getMethod().name());
+        summary(REQUEST_SIZE, tags).record(body.length);
+
+        Timer.Sample sample = Timer.start(meterRegistry);
+        ClientHttpResponse response;
+        try {
+            response = execution.execute(request, body);
+        } catch (IOException | RuntimeException e) {
+            sample.stop(timer(tags.and("status", "IO_ERROR", "outcome", "UNKNOWN",
+                    "exception", e.getClass().getSimpleName())));
+            throw e;
+        }
+
+        HttpStatusCode status = response.getStatusCode();
+        sample.stop(timer(tags.and("status", String.valueOf(status.value()), "outcome", outcome(status),
+                "exception", "none")));
+
+        //The body is read by the message converters after we return, so its size is recorded when it is consumed
+        return new SizeRecordingResponse(response, summary(RESPONSE_SIZE, tags));
+    }
+
+    static String uriTemplate(String path) {
+        for (UriTemplate template : URI_TEMPLATES) {
+            if (template.matches(path)) {
+                return template.toString();
+            }
+        }
+        return UNKNOWN_URI;
+    }
+
+    private static String outcome(HttpStatusCode status) {
+        if (status.is2xxSuccessful()) {
+            return "SUCCESS";
+        } else if (status.is3xxRedirection()) {
+            return "REDIRECTION";
+        } else if (status.is4xxClientError()) {
+            return "CLIENT_ERROR";
+        } else if (status.is5xxServerError()) {
+            return "SERVER_ERROR";
+        }
+        return "UNKNOWN";
+    }
+
+    //Meters are registered once and looked up by name and tags afterwards
+    private Timer timer(Tags tags) {
+        return Timer.builder(REQUESTS)
+                .description("HTTP exchanges of the BeerClient, token acquisition excluded")
+                .tags(tags)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    private DistributionSummary summary(String name, Tags tags) {
+        return DistributionSummary.builder(name)
+                .baseUnit("bytes")
+                .tags(tags)
+                .register(meterRegistry);
+    }
+
+    private static class SizeRecordingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final DistributionSummary responseSize;
+        private CountingInputStream body;
+        private boolean recorded;
+
+        SizeRecordingResponse(ClientHttpResponse response, DistributionSummary responseSize) {
+            this.response = response;
+            this.responseSize = responseSize;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        @Deprecated
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            if (body == null) {
+                body = new CountingInputStream(response.getBody());
+            }
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (!recorded) {
+                recorded = true;
+                responseSize.record(body != null ? body.count : Math.max(0, getHeaders().getContentLength()));
+            }
+            response.close();
+        }
+    }
+
+    private static class CountingInputStream extends FilterInputStream {
+
+        private long count;
+
+        CountingInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = super.read();
+            if (b != -1) {
+                count++;
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int n = super.read(b, off, len);
+            if (n > 0) {
+                count += n;
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            long skipped = super.skip(n);
+            count += skipped;
+            return skipped;
+        }
+
+        //A reset would count the same bytes twice, callers fall back to a pushback stream instead
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+    }
+}
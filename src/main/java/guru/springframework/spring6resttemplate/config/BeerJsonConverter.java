@@ -0,0 +1,27 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.web.client.RestTemplate;
+
+/**
+ * JSON converter of the beer client's RestTemplate, on an ObjectMapper of its own instead of the one Boot
+ * shares with the rest of the application. The mapper starts from Boot's Jackson2ObjectMapperBuilder, so
+ * spring.jackson.* settings and the java.time module still apply, and adds Blackbird, which replaces the
+ * reflective getter, setter and constructor calls of BeerDTO with generated lambdas.
+ * <p>
+ * The constructor warms the mapper up (see BeerObjectMappers), readerFor / writerFor are cache hits from then on,
+ * and the first requests don't pay for introspection and class generation.
+ */
+public class BeerJsonConverter extends MappingJackson2HttpMessageConverter {
+
+    public BeerJsonConverter(ObjectMapper objectMapper) {
+        super(BeerObjectMappers.warmedUp(objectMapper));
+    }
+
+    //Puts this converter in place of the Jackson converter the RestTemplate got from Boot
+    void replaceJsonConverter(RestTemplate restTemplate) {
+        restTemplate.getMessageConverters()
+                .replaceAll(converter -> converter instanceof MappingJackson2HttpMessageConverter ? this : converter);
+    }
+}
@@ -0,0 +1,68 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Prepares the ObjectMappers of the beer client's converters, whatever format they read and write. Adds Blackbird and
+ * warms the mapper up: it writes and reads a beer and reads a page, which resolves and caches the root (de)serializers
+ * of BeerDTO and BeerDTOPageImpl, with those of UUID, BeerStyle, BigDecimal and LocalDateTime, and has Blackbird
+ * generate its accessors.
+ */
+@Slf4j
+final class BeerObjectMappers {
+
+    private BeerObjectMappers() {
+    }
+
+    static ObjectMapper warmedUp(ObjectMapper objectMapper) {
+        objectMapper.registerModule(new BlackbirdModule());
+
+        long start = System.nanoTime();
+        BeerDTO beer = BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(1)
+                .beerName("Warm Up")
+                .beerStyle(BeerStyle.PALE_ALE)
+                .upc("123")
+                .quantityOnHand(1)
+                .price(new BigDecimal("1.99"))
+                .createdDate(LocalDateTime.now())
+                .updateDate(LocalDateTime.now())
+                .build();
+        JavaType pageType = objectMapper.getTypeFactory().constructParametricType(BeerDTOPageImpl.class, BeerDTO.class);
+
+        try {
+            byte[] beerBytes = objectMapper.writerFor(BeerDTO.class).writeValueAsBytes(beer);
+            objectMapper.readerFor(BeerDTO.class).readValue(beerBytes);
+
+            //Pages are only read. Writing one would fail anyway, Blackbird can't reach the getters of
+            //Spring Data's package private Chunk. A map in the shape the beer service sends does the job.
+            Map<String, Object> page = new LinkedHashMap<>();
+            page.put("content", List.of(beer));
+            page.put("number", 0);
+            page.put("size", 1);
+            page.put("totalElements", 1);
+            objectMapper.readerFor(pageType).readValue(objectMapper.writeValueAsBytes(page));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Beer " + objectMapper.getFactory().getFormatName() + " warm up failed", e);
+        }
+        log.debug("Beer {} mapper warmed up in {} ms", objectMapper.getFactory().getFormatName(),
+                (System.nanoTime() - start) / 1_000_000);
+        return objectMapper;
+    }
+}
@@ -0,0 +1,35 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.springframework.http.MediaType;
+
+import java.util.function.Supplier;
+
+/**
+ * Format of beer payloads, set with rest.template.wireFormat. CBOR and SMILE are asked for first and JSON
+ * stays acceptable, so a beer service that only speaks JSON keeps working.
+ */
+public enum BeerWireFormat {
+
+    JSON(MediaType.APPLICATION_JSON, JsonFactory::new),
+    CBOR(MediaType.APPLICATION_CBOR, CBORFactory::new),
+    SMILE(new MediaType("application", "x-jackson-smile"), SmileFactory::new);
+
+    private final MediaType mediaType;
+    private final Supplier<JsonFactory> factory;
+
+    BeerWireFormat(MediaType mediaType, Supplier<JsonFactory> factory) {
+        this.mediaType = mediaType;
+        this.factory = factory;
+    }
+
+    public MediaType getMediaType() {
+        return mediaType;
+    }
+
+    JsonFactory newFactory() {
+        return factory.get();
+    }
+}
@@ -0,0 +1,16 @@
+package guru.springframework.spring6resttemplate.config;
+
+import org.apache.hc.client5.http.entity.InputStreamFactory;
+import org.brotli.dec.BrotliInputStream;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+//HttpClient 5.1 has no brotli decoder of its own, org.brotli:dec brings one
+class BrotliInputStreamFactory implements InputStreamFactory {
+
+    @Override
+    public InputStream create(InputStream inputStream) throws IOException {
+        return new BrotliInputStream(inputStream);
+    }
+}
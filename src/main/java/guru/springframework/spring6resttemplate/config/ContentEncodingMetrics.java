@@ -0,0 +1,113 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.hc.client5.http.classic.ExecChainHandler;
+import org.apache.hc.core5.http.ClassicHttpResponse;
+import org.apache.hc.core5.http.HttpEntity;
+import org.apache.hc.core5.http.io.entity.HttpEntityWrapper;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Locale;
+
+/**
+ * Counts response body bytes on both sides of HttpClient's content decompression, as
+ * beer.client.response.bytes tagged with layer (wire or decoded) and the Content-Encoding of the response.
+ * The ratio of the two is the bandwidth compression saves.
+ * <p>
+ * {@link #wireBytesHandler()} goes right after the COMPRESS element of the exec chain, so it still sees the
+ * encoded entity, {@link #decodedBytesHandler()} right before it.
+ */
+class ContentEncodingMetrics {
+
+    static final String RESPONSE_BYTES = "beer.client.response.bytes";
+    static final String REQUEST_BYTES = "beer.client.request.bytes";
+
+    //Handed from the inner to the outer handler, decompression drops the Content-Encoding header
+    private static final String ENCODING_ATTRIBUTE = ContentEncodingMetrics.class.getName() + ".encoding";
+    private static final String IDENTITY = "identity";
+
+    private final MeterRegistry meterRegistry;
+
+    ContentEncodingMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+    }
+
+    ExecChainHandler wireBytesHandler() {
+        return (request, scope, chain) -> {
+            ClassicHttpResponse response = chain.proceed(request, scope);
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                String encoding = entity.getContentEncoding() == null ? IDENTITY
+                        : entity.getContentEncoding().toLowerCase(Locale.ROOT);
+                scope.clientContext.setAttribute(ENCODING_ATTRIBUTE, encoding);
+                response.setEntity(new CountingEntity(entity, responseBytes("wire", encoding)));
+            }
+            return response;
+        };
+    }
+
+    ExecChainHandler decodedBytesHandler() {
+        return (request, scope, chain) -> {
+            ClassicHttpResponse response = chain.proceed(request, scope);
+            HttpEntity entity = response.getEntity();
+            if (entity != null) {
+                Object encoding = scope.clientContext.getAttribute(ENCODING_ATTRIBUTE);
+                response.setEntity(new CountingEntity(entity,
+                        responseBytes("decoded", encoding == null ? IDENTITY : encoding.toString())));
+            }
+            return response;
+        };
+    }
+
+    Counter responseBytes(String layer, String encoding) {
+        return bytes(RESPONSE_BYTES, layer, encoding);
+    }
+
+    Counter requestBytes(String layer, String encoding) {
+        return bytes(REQUEST_BYTES, layer, encoding);
+    }
+
+    private Counter bytes(String name, String layer, String encoding) {
+        return Counter.builder(name)
+                .baseUnit("bytes")
+                .tag("layer", layer)
+                .tag("encoding", encoding)
+                .register(meterRegistry);
+    }
+
+    private static class CountingEntity extends HttpEntityWrapper {
+
+        private final Counter counter;
+
+        CountingEntity(HttpEntity entity, Counter counter) {
+            super(entity);
+            this.counter = counter;
+        }
+
+        @Override
+        public InputStream getContent() throws IOException {
+            return new FilterInputStream(super.getContent()) {
+                @Override
+                public int read() throws IOException {
+                    int b = super.read();
+                    if (b != -1) {
+                        counter.increment();
+                    }
+                    return b;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) throws IOException {
+                    int n = super.read(b, off, len);
+                    if (n > 0) {
+                        counter.increment(n);
+                    }
+                    return n;
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package guru.springframework.spring6resttemplate.config;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.support.HttpRequestWrapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Gzips POST and PUT bodies (createBeer/updateBeer) of at least minSize bytes and sends them with
+ * Content-Encoding: gzip. Opt-in, the server has to accept compressed request bodies.
+ */
+class GzipRequestInterceptor implements ClientHttpRequestInterceptor {
+
+    private final long minSize;
+    private final ContentEncodingMetrics metrics;
+
+    GzipRequestInterceptor(long minSize, ContentEncodingMetrics metrics) {
+        this.minSize = minSize;
+        this.metrics = metrics;
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+
+        boolean write = HttpMethod.POST.equals(request.getMethod()) || HttpMethod.PUT.equals(request.getMethod());
+        if (!write || body.length < minSize || request.getHeaders().containsKey(HttpHeaders.CONTENT_ENCODING)) {
+            metrics.requestBytes("decoded", "identity").increment(body.length);
+            metrics.requestBytes("wire", "identity").increment(body.length);
+            return execution.execute(request, body);
+        }
+
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream(body.length / 4);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(body);
+        }
+        byte[] gzipped = compressed.toByteArray();
+
+        metrics.requestBytes("decoded", "gzip").increment(body.length);
+        metrics.requestBytes("wire", "gzip").increment(gzipped.length);
+
+        //The gzip headers go on a copy. An interceptor before us that sends the request again sends the plain body,
+        //with the caller's headers still describing it.
+        HttpHeaders headers = new HttpHeaders();
+        headers.putAll(request.getHeaders());
+        headers.set(HttpHeaders.CONTENT_ENCODING, "gzip");
+        headers.setContentLength(gzipped.length);
+
+        return execution.execute(new HttpRequestWrapper(request) {
+            @Override
+            public HttpHeaders getHeaders() {
+                return headers;
+            }
+        }, gzipped);
+    }
+}
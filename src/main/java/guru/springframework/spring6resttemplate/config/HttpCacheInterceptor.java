@@ -0,0 +1,274 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.util.StreamUtils;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.time.Clock;
+import java.time.Instant;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Client side HTTP cache for GET requests. Responses are stored by their resolved URI (query parameters included)
+ * and honour Cache-Control, ETag and Last-Modified: fresh entries are served without a round trip, stale ones are
+ * revalidated with If-None-Match / If-Modified-Since and a 304 is answered from the store.
+ * <p>
+ * The store is a Caffeine cache bounded by body size, its eviction policy is W-TinyLFU.
+ * A PUT, POST or DELETE drops the entries of the target resource and of its collection,
+ * so updateBeer/deleteBeer also invalidate the cached listBeers pages. The keys are indexed by path for that,
+ * a write only touches the entries it drops.
+ */
+public class HttpCacheInterceptor implements ClientHttpRequestInterceptor {
+
+    private final Cache<String, CachedResponse> cache;
+    private final Clock clock;
+
+    //Keys of the cached entries by their path. Changed in compute only, so a path's set never needs a lock of its own.
+    private final ConcurrentMap<String, Set<String>> keysByPath = new ConcurrentHashMap<>();
+
+    public HttpCacheInterceptor(long maxSizeInBytes) {
+        this(maxSizeInBytes, Clock.systemUTC());
+    }
+
+    HttpCacheInterceptor(long maxSizeInBytes, Clock clock) {
+        this.clock = clock;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxSizeInBytes)
+                .weigher((String key, CachedResponse response) -> response.body().length + key.length())
+                .evictionListener((String key, CachedResponse response, RemovalCause cause) -> unindex(key, response))
+                .recordStats()
+                .build();
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+
+        if (!HttpMethod.GET.equals(request.getMethod())) {
+            ClientHttpResponse response = execution.execute(request, body);
+            if (!HttpMethod.HEAD.equals(request.getMethod()) && !HttpMethod.OPTIONS.equals(request.getMethod())) {
+                invalidate(request.getURI());
+            }
+            return response;
+        }
+
+        String key = request.getURI().toString();
+        CachedResponse cached = cache.getIfPresent(key);
+
+        if (cached != null && cached.isFresh(clock.instant())) {
+            return cached.toResponse();
+        }
+
+        //Stale entry, ask the server whether our copy is still good
+        if (cached != null) {
+            if (cached.headers().getETag() != null) {
+                request.getHeaders().setIfNoneMatch(cached.headers().getETag());
+            }
+            if (cached.headers().getLastModified() != -1) {
+                request.getHeaders().setIfModifiedSince(cached.headers().getLastModified());
+            }
+        }
+
+        ClientHttpResponse response = execution.execute(request, body);
+        HttpStatusCode status = response.getStatusCode();
+
+        if (cached != null && status.value() == HttpStatus.NOT_MODIFIED.value()) {
+            CachedResponse revalidated = cached.revalidate(response.getHeaders(), clock.instant());
+            response.close();
+            put(key, revalidated);
+            return revalidated.toResponse();
+        }
+
+        if (status.value() == HttpStatus.OK.value() && isCacheable(response.getHeaders(), clock.instant())) {
+            CachedResponse entry;
+            try (response) {
+                entry = new CachedResponse(request.getURI().getPath(), status, response.getStatusText(),
+                        copyOf(response.getHeaders()),
+                        StreamUtils.copyToByteArray(response.getBody()),
+                        freshUntil(response.getHeaders(), clock.instant()));
+            }
+            put(key, entry);
+            return entry.toResponse();
+        }
+
+        return response;
+    }
+
+    public Cache<String, CachedResponse> getCache() {
+        return cache;
+    }
+
+    public void invalidateAll() {
+        cache.invalidateAll();
+        keysByPath.clear();
+    }
+
+    //Drops the resource itself plus its collection, e.g. /api/v1/beer/{id} and every /api/v1/beer?... page
+    void invalidate(URI uri) {
+        String path = uri.getPath();
+        String collectionPath = path.contains("/") ? path.substring(0, path.lastIndexOf('/')) : path;
+
+        invalidatePath(path);
+        invalidatePath(collectionPath);
+    }
+
+    private void invalidatePath(String path) {
+        Set<String> keys = keysByPath.remove(path);
+        if (keys != null) {
+            cache.invalidateAll(keys);
+        }
+    }
+
+    //Indexed after the put, so an invalidation running in between still finds the key on the next write
+    private void put(String key, CachedResponse entry) {
+        cache.put(key, entry);
+        keysByPath.compute(entry.path(), (path, keys) -> {
+            Set<String> indexed = keys != null ? keys : new HashSet<>();
+            indexed.add(key);
+            return indexed;
+        });
+    }
+
+    private void unindex(String key, CachedResponse entry) {
+        keysByPath.computeIfPresent(entry.path(), (path, keys) -> {
+            keys.remove(key);
+            return keys.isEmpty() ? null : keys;
+        });
+    }
+
+    private static HttpHeaders copyOf(HttpHeaders headers) {
+        HttpHeaders copy = new HttpHeaders();
+        copy.putAll(headers);
+        return HttpHeaders.readOnlyHttpHeaders(copy);
+    }
+
+    private static boolean isCacheable(HttpHeaders headers, Instant now) {
+        List<String> directives = cacheControlDirectives(headers);
+        if (directives.contains("no-store")) {
+            return false;
+        }
+        return headers.getETag() != null || headers.getLastModified() != -1 || maxAgeSeconds(directives) > 0
+                || headers.getExpires() > now.toEpochMilli();
+    }
+
+    //Without an explicit lifetime the entry is stale right away and every use is revalidated
+    private static Instant freshUntil(HttpHeaders headers, Instant now) {
+        List<String> directives = cacheControlDirectives(headers);
+        if (directives.contains("no-cache")) {
+            return now;
+        }
+
+        long maxAge = maxAgeSeconds(directives);
+        if (maxAge > 0) {
+            return now.plusSeconds(Math.max(0, maxAge - ageSeconds(headers)));
+        }
+
+        if (headers.getExpires() > 0) {
+            return Instant.ofEpochMilli(headers.getExpires());
+        }
+        return now;
+    }
+
+    private static long ageSeconds(HttpHeaders headers) {
+        try {
+            String age = headers.getFirst(HttpHeaders.AGE);
+            return age == null ? 0 : Long.parseLong(age.trim());
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private static List<String> cacheControlDirectives(HttpHeaders headers) {
+        String cacheControl = headers.getCacheControl();
+        if (cacheControl == null) {
+            return List.of();
+        }
+        return List.of(cacheControl.toLowerCase().replace(" ", "").split(","));
+    }
+
+    private static long maxAgeSeconds(List<String> directives) {
+        for (String directive : directives) {
+            if (directive.startsWith("max-age=")) {
+                try {
+                    return Long.parseLong(directive.substring("max-age=".length()));
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 0;
+    }
+
+    public record CachedResponse(String path, HttpStatusCode status, String statusText, HttpHeaders headers,
+                                 byte[] body, Instant freshUntil) {
+
+        boolean isFresh(Instant now) {
+            return now.isBefore(freshUntil);
+        }
+
+        //A 304 may carry new validators and a new lifetime, the body stays ours
+        CachedResponse revalidate(HttpHeaders notModifiedHeaders, Instant now) {
+            HttpHeaders merged = new HttpHeaders();
+            merged.putAll(headers);
+            for (String name : List.of(HttpHeaders.ETAG, HttpHeaders.LAST_MODIFIED, HttpHeaders.CACHE_CONTROL,
+                    HttpHeaders.EXPIRES, HttpHeaders.DATE, HttpHeaders.AGE)) {
+                if (notModifiedHeaders.containsKey(name)) {
+                    merged.put(name, notModifiedHeaders.get(name));
+                }
+            }
+            return new CachedResponse(path, status, statusText, HttpHeaders.readOnlyHttpHeaders(merged), body,
+                    HttpCacheInterceptor.freshUntil(merged, now));
+        }
+
+        ClientHttpResponse toResponse() {
+            return new ClientHttpResponse() {
+                @Override
+                public HttpStatusCode getStatusCode() {
+                    return status;
+                }
+
+                @Override
+                @Deprecated
+                public int getRawStatusCode() {
+                    return status.value();
+                }
+
+                @Override
+                public String getStatusText() {
+                    return statusText;
+                }
+
+                @Override
+                public void close() {
+                }
+
+                @Override
+                public InputStream getBody() {
+                    return new ByteArrayInputStream(body);
+                }
+
+                @Override
+                public HttpHeaders getHeaders() {
+                    return headers;
+                }
+            };
+        }
+    }
+}
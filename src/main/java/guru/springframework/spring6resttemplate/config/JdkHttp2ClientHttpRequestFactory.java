@@ -0,0 +1,281 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.AbstractClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequest;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.scheduling.concurrent.CustomizableThreadFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Sends the RestTemplate's requests with the JDK HttpClient over HTTP/2, so concurrent calls share one
+ * connection per host as multiplexed streams instead of holding a pooled HTTP/1.1 connection each.
+ * <p>
+ * For https the protocol is negotiated with ALPN, for plain http (our rootUrl) the client asks for an h2c
+ * upgrade. A server that doesn't speak HTTP/2 just answers in HTTP/1.1 and the client stays on it, the
+ * version each response came with is counted in beer.client.http2.responses.
+ * <p>
+ * At most maxConcurrentStreams requests are open at a time, a stream counts until its response is closed.
+ * Requests over that wait up to the connect timeout for a free stream. The JDK client doesn't decompress,
+ * so no Accept-Encoding is sent.
+ * <p>
+ * The JDK client's request timeout only covers the wait for the headers. The read timeout is kept for the body
+ * as well, like a socket timeout: a read of the body that gets no data within it closes the body and fails with
+ * a SocketTimeoutException, which gives the stream back.
+ */
+class JdkHttp2ClientHttpRequestFactory implements ClientHttpRequestFactory, DisposableBean {
+
+    static final String RESPONSES = "beer.client.http2.responses";
+
+    //Set by the JDK client itself, it refuses requests that carry them
+    private static final Set<String> RESTRICTED_HEADERS = Set.of("connection", "content-length", "expect", "host", "upgrade");
+
+    private final HttpClient httpClient;
+    private final Duration connectTimeout;
+    private final Duration readTimeout;
+    private final Semaphore streams;
+    private final MeterRegistry meterRegistry;
+
+    //Closes the body of a read that ran past the read timeout
+    private final ScheduledThreadPoolExecutor readTimeouts;
+
+    JdkHttp2ClientHttpRequestFactory(Duration connectTimeout, Duration readTimeout, int maxConcurrentStreams,
+                                     MeterRegistry meterRegistry) {
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .build();
+        this.connectTimeout = connectTimeout;
+        this.readTimeout = readTimeout;
+        this.streams = new Semaphore(maxConcurrentStreams);
+        this.meterRegistry = meterRegistry;
+
+        CustomizableThreadFactory threadFactory = new CustomizableThreadFactory("beer-client-http2-timeout-");
+        threadFactory.setDaemon(true);
+        this.readTimeouts = new ScheduledThreadPoolExecutor(1, threadFactory);
+        //Almost every read finishes in time, its cancelled timeout shouldn't wait in the queue until it's due
+        this.readTimeouts.setRemoveOnCancelPolicy(true);
+
+        Gauge.builder("beer.client.http2.streams", streams, s -> maxConcurrentStreams - s.availablePermits())
+                .description("Requests with an open stream")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public void destroy() {
+        readTimeouts.shutdownNow();
+    }
+
+    @Override
+    public ClientHttpRequest createRequest(URI uri, HttpMethod httpMethod) {
+        return new JdkClientHttpRequest(uri, httpMethod);
+    }
+
+    private class JdkClientHttpRequest extends AbstractClientHttpRequest {
+
+        private final URI uri;
+        private final HttpMethod method;
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1024);
+
+        JdkClientHttpRequest(URI uri, HttpMethod method) {
+            this.uri = uri;
+            this.method = method;
+        }
+
+        @Override
+        public HttpMethod getMethod() {
+            return method;
+        }
+
+        @Override
+        public URI getURI() {
+            return uri;
+        }
+
+        @Override
+        protected OutputStream getBodyInternal(HttpHeaders headers) {
+            return body;
+        }
+
+        @Override
+        protected ClientHttpResponse executeInternal(HttpHeaders headers) throws IOException {
+            HttpRequest.BodyPublisher publisher = body.size() == 0 ? HttpRequest.BodyPublishers.noBody()
+                    : HttpRequest.BodyPublishers.ofByteArray(body.toByteArray());
+            HttpRequest.Builder request = HttpRequest.newBuilder(uri)
+                    .method(method.name(), publisher)
+                    .timeout(readTimeout);
+            headers.forEach((name, values) -> {
+                if (!RESTRICTED_HEADERS.contains(name.toLowerCase())) {
+                    values.forEach(value -> request.header(name, value));
+                }
+            });
+
+            try {
+                if (!streams.tryAcquire(connectTimeout.toNanos(), TimeUnit.NANOSECONDS)) {
+                    throw new IOException("No free HTTP/2 stream within " + connectTimeout);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a free HTTP/2 stream");
+            }
+
+            HttpResponse<InputStream> response;
+            try {
+                response = httpClient.send(request.build(), HttpResponse.BodyHandlers.ofInputStream());
+            } catch (InterruptedException e) {
+                streams.release();
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for " + uri);
+            } catch (IOException | RuntimeException e) {
+                streams.release();
+                throw e;
+            }
+
+            meterRegistry.counter(RESPONSES, "version", response.version().name()).increment();
+            return new JdkClientHttpResponse(response);
+        }
+    }
+
+    private class JdkClientHttpResponse implements ClientHttpResponse {
+
+        private final HttpResponse<InputStream> response;
+        private final InputStream body;
+        private final AtomicBoolean closed = new AtomicBoolean();
+        private HttpHeaders headers;
+
+        JdkClientHttpResponse(HttpResponse<InputStream> response) {
+            this.response = response;
+            this.body = new ReadTimeoutInputStream(response.body());
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() {
+            return HttpStatusCode.valueOf(response.statusCode());
+        }
+
+        @Override
+        @Deprecated
+        public int getRawStatusCode() {
+            return response.statusCode();
+        }
+
+        @Override
+        public String getStatusText() {
+            //HTTP/2 has no reason phrase and the JDK client doesn't expose the HTTP/1.1 one
+            return "";
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            if (headers == null) {
+                HttpHeaders copy = new HttpHeaders();
+                for (Map.Entry<String, List<String>> header : response.headers().map().entrySet()) {
+                    //Skip HTTP/2 pseudo headers like :status
+                    if (!header.getKey().startsWith(":")) {
+                        copy.addAll(header.getKey(), header.getValue());
+                    }
+                }
+                headers = HttpHeaders.readOnlyHttpHeaders(copy);
+            }
+            return headers;
+        }
+
+        @Override
+        public InputStream getBody() {
+            return body;
+        }
+
+        @Override
+        public void close() {
+            if (closed.compareAndSet(false, true)) {
+                try {
+                    //Drains or resets the stream, the connection stays usable either way
+                    response.body().close();
+                } catch (IOException e) {
+                    //Nothing left to do with a body we don't read anymore
+                } finally {
+                    streams.release();
+                }
+            }
+        }
+    }
+
+    //Every read gets readTimeout to return, a stalled one has its stream closed under it
+    private class ReadTimeoutInputStream extends FilterInputStream {
+
+        private volatile boolean timedOut;
+
+        ReadTimeoutInputStream(InputStream in) {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException {
+            ScheduledFuture<?> timeout = scheduleTimeout();
+            try {
+                return super.read();
+            } catch (IOException e) {
+                throw timedOut ? readTimedOut() : e;
+            } finally {
+                timeout.cancel(false);
+            }
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            ScheduledFuture<?> timeout = scheduleTimeout();
+            try {
+                return super.read(b, off, len);
+            } catch (IOException e) {
+                throw timedOut ? readTimedOut() : e;
+            } finally {
+                timeout.cancel(false);
+            }
+        }
+
+        private ScheduledFuture<?> scheduleTimeout() throws IOException {
+            if (timedOut) {
+                throw readTimedOut();
+            }
+            return readTimeouts.schedule(() -> {
+                timedOut = true;
+                try {
+                    in.close();
+                } catch (IOException e) {
+                    //The read fails with the timeout all the same
+                }
+            }, readTimeout.toNanos(), TimeUnit.NANOSECONDS);
+        }
+
+        private SocketTimeoutException readTimedOut() {
+            return new SocketTimeoutException("Read timed out after " + readTimeout);
+        }
+    }
+}
@@ -1,7 +1,13 @@
 package guru.springframework.spring6resttemplate.config;
 
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.client.ClientHttpRequestExecution;
 import org.springframework.http.client.ClientHttpRequestInterceptor;
 import org.springframework.http.client.ClientHttpResponse;
@@ -10,28 +16,79 @@ import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.oauth2.client.OAuth2AuthorizeRequest;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static java.util.Objects.isNull;
 
 @Component
 public class OAuthClientInterceptor implements ClientHttpRequestInterceptor {
+
+    //We refresh the token this long before it expires. It is kept below the 60s clock skew of the
+    //client credentials provider, so the manager really fetches a new token when we ask for one.
+    static final Duration REFRESH_AHEAD = Duration.ofSeconds(30);
+
+    static final String TOKEN_ACQUISITION = "beer.client.token.acquisition";
+
     private final OAuth2AuthorizedClientManager manager; //Previously implemented
+    private final OAuth2AuthorizedClientService authorizedClientService; //Used to drop a token the server rejected
     private final Authentication principal;
     private final ClientRegistration clientRegistration;
+    private final OAuth2AuthorizeRequest authorizeRequest;
+    private final Clock clock = Clock.systemUTC();
+
+    //Time a request waits for its token, kept apart from the HTTP time recorded by BeerClientMetricsInterceptor
+    private final Timer tokenAcquisitionTimer;
 
+    //The token every request uses. Reads are a single volatile get, no locking and no allocation.
+    private final AtomicReference<CachedToken> currentToken = new AtomicReference<>();
+
+    //Holds the refresh that is running right now, so concurrent callers share one call to the token endpoint
+    private final AtomicReference<CompletableFuture<CachedToken>> refreshInFlight = new AtomicReference<>();
+
+    @Autowired
     public OAuthClientInterceptor(OAuth2AuthorizedClientManager manager,
-                                  ClientRegistrationRepository clientRegistrationRepository) {
+                                  ClientRegistrationRepository clientRegistrationRepository,
+                                  OAuth2AuthorizedClientService authorizedClientService,
+                                  ObjectProvider<MeterRegistry> meterRegistry) {
+        this(manager, clientRegistrationRepository, authorizedClientService,
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    public OAuthClientInterceptor(OAuth2AuthorizedClientManager manager,
+                                  ClientRegistrationRepository clientRegistrationRepository,
+                                  OAuth2AuthorizedClientService authorizedClientService,
+                                  MeterRegistry meterRegistry) {
         this.manager = manager;
-        this.principal = createPrincipal();
+        this.authorizedClientService = authorizedClientService;
         this.clientRegistration = clientRegistrationRepository.findByRegistrationId("springauth"); //Reg. ID From app.properties
+        this.principal = createPrincipal();
+
+        //Represents a request which contains info about client we want to authorize.
+        //Principal and registration never change, so we build it once and reuse it for every refresh.
+        this.authorizeRequest = OAuth2AuthorizeRequest
+                .withClientRegistrationId(clientRegistration.getRegistrationId()) //configered from application.prop
+                .principal(principal) //It Represents an Authenticated client
+                .build();
+
+        this.tokenAcquisitionTimer = Timer.builder(TOKEN_ACQUISITION)
+                .description("Time spent obtaining the bearer token for a request")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
     }
 
     //Standard interceptor which intercepts a request and work with the ClientManager
@@ -39,29 +96,101 @@ public class OAuthClientInterceptor implements ClientHttpRequestInterceptor {
     public ClientHttpResponse intercept(HttpRequest request, byte[] body,
                                         ClientHttpRequestExecution execution) throws IOException {
 
-        //Represents a request which contains info about client we want to authorize
-        OAuth2AuthorizeRequest oAuth2AuthorizeRequest = OAuth2AuthorizeRequest
-                .withClientRegistrationId(clientRegistration.getRegistrationId()) //configered from application.prop
-                .principal(createPrincipal()) //It Represents an Authenticated client
-                .build();
+        //We bind the cached token to the header
+        long start = System.nanoTime();
+        CachedToken token = currentToken();
+        tokenAcquisitionTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        request.getHeaders().set(HttpHeaders.AUTHORIZATION, token.bearerHeader());
+
+        ClientHttpResponse response = execution.execute(request, body);
+
+        //The server rejected our token (revoked or rotated early). We drop it, so the next request gets a fresh one.
+        //BeerClientImpl retries once: a second execute here would skip the interceptors after us.
+        if (response.getStatusCode().value() == HttpStatus.UNAUTHORIZED.value()) {
+            invalidate(token);
+        }
+        return response;
+    }
 
-        //OAuth2AuthorizedClient(ClientRegistration clientRegistration, String principalName, OAuth2AccessToken accessToken)
-        // method Attempts to authorize or re-authorize the client identified by the provided clientRegistrationId.
-        //Returns: the OAuth2AuthorizedClient or null if authorization is not supported for the specified client
-        OAuth2AuthorizedClient client = manager.authorize(oAuth2AuthorizeRequest);
+    //Returns the cached token, refreshing it ahead of expiry
+    CachedToken currentToken() {
+        CachedToken token = currentToken.get();
+        Instant now = clock.instant();
 
-        //if client isn't authorized
-        if (isNull(client)) {
-            throw new IllegalStateException("Missing credentials");
+        if (token != null && now.isBefore(token.refreshAt())) {
+            return token;
         }
 
-        //The manager will provide client with token
-        //We bind the token to the header
-        request.getHeaders().add(HttpHeaders.AUTHORIZATION,
-                "Bearer " + client.getAccessToken().getTokenValue());
+        if (token != null && now.isBefore(token.expiresAt())) {
+            //Still valid, so only the one caller that starts the refresh waits for it, the others keep going
+            refresh();
+            return token;
+        }
 
-        //Return the execution of the request
-        return execution.execute(request, body);
+        //No token yet or it has expired, everybody has to wait for the (single) refresh
+        return awaitRefresh();
+    }
+
+    private CachedToken awaitRefresh() {
+        try {
+            return refresh().join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw e;
+        }
+    }
+
+    //Single-flight refresh: only the caller that installs the future talks to the token endpoint, on its own thread.
+    //No pool thread is blocked on the token endpoint, and a stuck endpoint holds up one caller rather than a pool.
+    private CompletableFuture<CachedToken> refresh() {
+        while (true) {
+            CompletableFuture<CachedToken> inFlight = refreshInFlight.get();
+            if (inFlight != null) {
+                return inFlight;
+            }
+
+            CompletableFuture<CachedToken> refresh = new CompletableFuture<>();
+            if (refreshInFlight.compareAndSet(null, refresh)) {
+                authorize(refresh);
+                return refresh;
+            }
+        }
+    }
+
+    private void authorize(CompletableFuture<CachedToken> refresh) {
+        try {
+            //Method Attempts to authorize or re-authorize the client identified by the provided clientRegistrationId.
+            //Returns: the OAuth2AuthorizedClient or null if authorization is not supported for the specified client
+            OAuth2AuthorizedClient client = manager.authorize(authorizeRequest);
+
+            //if client isn't authorized
+            if (isNull(client)) {
+                throw new IllegalStateException("Missing credentials");
+            }
+
+            CachedToken token = new CachedToken(client.getAccessToken());
+            currentToken.set(token);
+            refresh.complete(token);
+        } catch (Throwable e) {
+            refresh.completeExceptionally(e);
+        } finally {
+            refreshInFlight.compareAndSet(refresh, null);
+        }
+    }
+
+    private void invalidate(CachedToken token) {
+        //Only the first caller seeing the rejected token drops it, the others wait for the new one
+        if (currentToken.compareAndSet(token, null)) {
+            //Otherwise the manager would hand back the same token from its store
+            authorizedClientService.removeAuthorizedClient(clientRegistration.getRegistrationId(), principal.getName());
+        }
+    }
+
+    //The authorized client is stored under this principal, the beer WebClient authorizes with it as well
+    Authentication getPrincipal() {
+        return principal;
     }
 
     //Authentication is spring security component, contains information about the authenticated principal.
@@ -104,4 +233,18 @@ public class OAuthClientInterceptor implements ClientHttpRequestInterceptor {
             }
         };
     }
+
+    //The header value is built once per token, so requests only read a field
+    record CachedToken(String bearerHeader, Instant refreshAt, Instant expiresAt) {
+
+        CachedToken(OAuth2AccessToken accessToken) {
+            this("Bearer " + accessToken.getTokenValue(),
+                    refreshAt(accessToken.getExpiresAt()),
+                    isNull(accessToken.getExpiresAt()) ? Instant.MAX : accessToken.getExpiresAt());
+        }
+
+        private static Instant refreshAt(Instant expiresAt) {
+            return isNull(expiresAt) ? Instant.MAX : expiresAt.minus(REFRESH_AHEAD);
+        }
+    }
 }
@@ -0,0 +1,214 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpRequest;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Retry, circuit breaker and bulkhead around every request, one breaker and one bulkhead per endpoint
+ * (method plus URI template, e.g. "GET /api/v1/beer/{beerId}").
+ * <p>
+ * Only idempotent methods are retried, so createBeer (POST) is sent once. A retry happens on an I/O error or a
+ * 502/503/504, after an exponential backoff with random jitter. Every attempt counts for the breaker, an open
+ * breaker fails fast with CallNotPermittedException and a full bulkhead with BulkheadFullException.
+ * An I/O error on an interrupted thread is a cancelled request, it isn't retried and the breaker doesn't count it.
+ * The bulkhead permit is held until the response is closed, so a slow body transfer counts as in flight too.
+ * <p>
+ * Runs after the concurrency limiter and before BeerBinaryConverter, on purpose. A retry calls the execution again,
+ * which goes straight to the request factory and skips BeerBinaryConverter: a 415 on a retry is returned as it is
+ * instead of being resent as JSON. The service refuses a binary body on the first attempt already, and from then on
+ * BeerBinaryConverter sends JSON only.
+ */
+@Slf4j
+public class ResilienceInterceptor implements ClientHttpRequestInterceptor {
+
+    private static final Set<HttpMethod> IDEMPOTENT_METHODS = Set.of(HttpMethod.GET, HttpMethod.HEAD,
+            HttpMethod.OPTIONS, HttpMethod.PUT, HttpMethod.DELETE);
+
+    private static final Set<Integer> RETRYABLE_STATUSES = Set.of(HttpStatus.BAD_GATEWAY.value(),
+            HttpStatus.SERVICE_UNAVAILABLE.value(), HttpStatus.GATEWAY_TIMEOUT.value());
+
+    private final CircuitBreakerRegistry circuitBreakerRegistry;
+    private final BulkheadRegistry bulkheadRegistry;
+    private final int maxAttempts;
+    private final IntervalFunction backoff;
+
+    public ResilienceInterceptor(CircuitBreakerRegistry circuitBreakerRegistry, BulkheadRegistry bulkheadRegistry,
+                                 int maxAttempts, IntervalFunction backoff) {
+        this.circuitBreakerRegistry = circuitBreakerRegistry;
+        this.bulkheadRegistry = bulkheadRegistry;
+        this.maxAttempts = maxAttempts;
+        this.backoff = backoff;
+
+        //Breakers are created lazily per endpoint, we hook the state change logging as they come in
+        circuitBreakerRegistry.getEventPublisher().onEntryAdded(event -> event.getAddedEntry().getEventPublisher()
+                .onStateTransition(transition -> log.warn("Circuit breaker '{}' changed state: {}",
+                        transition.getCircuitBreakerName(), transition.getStateTransition())));
+    }
+
+    @Override
+    public ClientHttpResponse intercept(HttpRequest request, byte[] body,
+                                        ClientHttpRequestExecution execution) throws IOException {
+
+        String endpoint = request.getMethod().name() + " "
+                + BeerClientMetricsInterceptor.uriTemplate(request.getURI().getPath());
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker(endpoint);
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead(endpoint);
+
+        int attempts = IDEMPOTENT_METHODS.contains(request.getMethod()) ? maxAttempts : 1;
+
+        bulkhead.acquirePermission();
+        ClientHttpResponse response;
+        try {
+            response = executeWithRetry(request, body, execution, circuitBreaker, attempts);
+        } catch (IOException | RuntimeException | Error e) {
+            bulkhead.onComplete();
+            throw e;
+        }
+        return new BulkheadReleasingResponse(response, bulkhead);
+    }
+
+    private ClientHttpResponse executeWithRetry(HttpRequest request, byte[] body, ClientHttpRequestExecution execution,
+                                                CircuitBreaker circuitBreaker, int attempts) throws IOException {
+        for (int attempt = 1; ; attempt++) {
+            boolean lastAttempt = attempt >= attempts;
+
+            circuitBreaker.acquirePermission();
+            long start = circuitBreaker.getCurrentTimestamp();
+            ClientHttpResponse response;
+            try {
+                response = execution.execute(request, body);
+            } catch (IOException e) {
+                //Cancelled, e.g. the attempt of a hedged call that lost. Neither a failure nor worth a retry.
+                if (Thread.currentThread().isInterrupted()) {
+                    circuitBreaker.releasePermission();
+                    throw e;
+                }
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start,
+                        circuitBreaker.getTimestampUnit(), e);
+                if (lastAttempt) {
+                    throw e;
+                }
+                sleep(attempt);
+                continue;
+            } catch (RuntimeException | Error e) {
+                //Thrown by the request factory or an interceptor after us. Recorded and not retried, a permission
+                //left unrecorded would be lost for good, in HALF_OPEN one of the few trial calls.
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start,
+                        circuitBreaker.getTimestampUnit(), e);
+                throw e;
+            }
+
+            int status;
+            try {
+                status = response.getStatusCode().value();
+            } catch (IOException | RuntimeException | Error e) {
+                response.close();
+                circuitBreaker.onError(circuitBreaker.getCurrentTimestamp() - start,
+                        circuitBreaker.getTimestampUnit(), e);
+                throw e;
+            }
+            long duration = circuitBreaker.getCurrentTimestamp() - start;
+            if (status < 500) {
+                circuitBreaker.onSuccess(duration, circuitBreaker.getTimestampUnit());
+                return response;
+            }
+
+            circuitBreaker.onError(duration, circuitBreaker.getTimestampUnit(),
+                    new HttpServerErrorException(response.getStatusCode()));
+            if (lastAttempt || !RETRYABLE_STATUSES.contains(status)) {
+                return response;
+            }
+
+            //The failed response is dropped before we try again, so its connection goes back to the pool
+            response.close();
+            sleep(attempt);
+        }
+    }
+
+    private void sleep(int attempt) throws IOException {
+        try {
+            TimeUnit.MILLISECONDS.sleep(backoff.apply(attempt));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting to retry");
+        }
+    }
+
+    public CircuitBreakerRegistry getCircuitBreakerRegistry() {
+        return circuitBreakerRegistry;
+    }
+
+    public BulkheadRegistry getBulkheadRegistry() {
+        return bulkheadRegistry;
+    }
+
+    //Gives the bulkhead permit back on close, once
+    private static class BulkheadReleasingResponse implements ClientHttpResponse {
+
+        private final ClientHttpResponse response;
+        private final Bulkhead bulkhead;
+        private boolean released;
+
+        BulkheadReleasingResponse(ClientHttpResponse response, Bulkhead bulkhead) {
+            this.response = response;
+            this.bulkhead = bulkhead;
+        }
+
+        @Override
+        public HttpStatusCode getStatusCode() throws IOException {
+            return response.getStatusCode();
+        }
+
+        @Override
+        @Deprecated
+        public int getRawStatusCode() throws IOException {
+            return response.getRawStatusCode();
+        }
+
+        @Override
+        public String getStatusText() throws IOException {
+            return response.getStatusText();
+        }
+
+        @Override
+        public HttpHeaders getHeaders() {
+            return response.getHeaders();
+        }
+
+        @Override
+        public InputStream getBody() throws IOException {
+            return response.getBody();
+        }
+
+        @Override
+        public void close() {
+            try {
+                response.close();
+            } finally {
+                if (!released) {
+                    released = true;
+                    bulkhead.onComplete();
+                }
+            }
+        }
+    }
+}
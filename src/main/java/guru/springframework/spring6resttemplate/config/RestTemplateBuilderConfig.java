@@ -1,17 +1,59 @@
 package guru.springframework.spring6resttemplate.config;
 
+import guru.springframework.spring6resttemplate.client.RequestCancellation;
+import io.github.resilience4j.bulkhead.BulkheadConfig;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import io.github.resilience4j.micrometer.tagged.TaggedBulkheadMetrics;
+import io.github.resilience4j.micrometer.tagged.TaggedCircuitBreakerMetrics;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Metrics;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.entity.DeflateInputStreamFactory;
+import org.apache.hc.client5.http.entity.GZIPInputStreamFactory;
+import org.apache.hc.client5.http.entity.InputStreamFactory;
+import org.apache.hc.client5.http.impl.ChainElement;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClientBuilder;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.concurrent.Cancellable;
+import org.apache.hc.core5.http.ClassicHttpRequest;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.ObjectProvider;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.boot.autoconfigure.web.client.RestTemplateBuilderConfigurer;
 import org.springframework.boot.web.client.RestTemplateBuilder;
+import org.springframework.boot.web.client.RestTemplateCustomizer;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
 import org.springframework.security.oauth2.client.AuthorizedClientServiceOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientProviderBuilder;
 import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.util.unit.DataSize;
 import org.springframework.web.util.DefaultUriBuilderFactory;
 
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.function.Supplier;
+
 @Configuration //Annotate our config file with Configuration annotation
 public class RestTemplateBuilderConfig {
 
@@ -19,6 +61,102 @@ public class RestTemplateBuilderConfig {
     @Value("${rest.template.rootUrl}")
     String rootUrl;
 
+    //Connection pool settings, shared by every RestTemplate built from our builder
+    @Value("${rest.template.pool.maxTotal:100}")
+    int poolMaxTotal;
+
+    @Value("${rest.template.pool.maxPerRoute:20}")
+    int poolMaxPerRoute;
+
+    //Used when the server doesn't send a Keep-Alive header
+    @Value("${rest.template.pool.keepAlive:30s}")
+    Duration poolKeepAlive;
+
+    //Connections idle for longer than this are closed by a background evictor thread
+    @Value("${rest.template.pool.evictIdleAfter:60s}")
+    Duration poolEvictIdleAfter;
+
+    //Without these a hung beer service would block the calling thread forever
+    @Value("${rest.template.timeout.connect:2s}")
+    Duration connectTimeout;
+
+    @Value("${rest.template.timeout.read:10s}")
+    Duration readTimeout;
+
+    //How long a request waits for a free connection when the pool is exhausted
+    @Value("${rest.template.timeout.poolAcquire:2s}")
+    Duration poolAcquireTimeout;
+
+    //Sends Accept-Encoding and decompresses responses as they are read
+    @Value("${rest.template.compression.enabled:true}")
+    boolean compressionEnabled;
+
+    //Request bodies from this size on are gzipped when rest.template.compression.requestGzip is on
+    @Value("${rest.template.compression.requestGzipMinSize:2KB}")
+    DataSize requestGzipMinSize;
+
+    //HTTP_2 multiplexes requests over the JDK HttpClient instead of pooled Apache HttpClient connections
+    @Value("${rest.template.transport:HTTP_1_1}")
+    String transport;
+
+    //Open streams over all HTTP/2 connections, the server's own SETTINGS_MAX_CONCURRENT_STREAMS applies as well
+    @Value("${rest.template.http2.maxConcurrentStreams:100}")
+    int http2MaxConcurrentStreams;
+
+    //CBOR or SMILE are asked for before JSON and used for request bodies, JSON is the fallback either way
+    @Value("${rest.template.wireFormat:JSON}")
+    BeerWireFormat wireFormat;
+
+    //Retry, circuit breaker and bulkhead settings, the breaker and the bulkhead are per endpoint
+    @Value("${rest.template.resilience.retry.maxAttempts:3}")
+    int retryMaxAttempts;
+
+    @Value("${rest.template.resilience.retry.initialBackoff:100ms}")
+    Duration retryInitialBackoff;
+
+    @Value("${rest.template.resilience.retry.maxBackoff:2s}")
+    Duration retryMaxBackoff;
+
+    @Value("${rest.template.resilience.circuitBreaker.failureRateThreshold:50}")
+    float circuitBreakerFailureRateThreshold;
+
+    @Value("${rest.template.resilience.circuitBreaker.slidingWindowSize:20}")
+    int circuitBreakerSlidingWindowSize;
+
+    @Value("${rest.template.resilience.circuitBreaker.waitInOpenState:10s}")
+    Duration circuitBreakerWaitInOpenState;
+
+    @Value("${rest.template.resilience.bulkhead.maxConcurrentCalls:20}")
+    int bulkheadMaxConcurrentCalls;
+
+    //Adaptive per host concurrency limit, the limit moves between minLimit and maxLimit
+    @Value("${rest.template.limiter.initialLimit:20}")
+    int limiterInitialLimit;
+
+    @Value("${rest.template.limiter.minLimit:1}")
+    int limiterMinLimit;
+
+    @Value("${rest.template.limiter.maxLimit:200}")
+    int limiterMaxLimit;
+
+    //Factor applied to the limit on a 429, 503, I/O error or a round trip over rttTolerance times the average
+    @Value("${rest.template.limiter.backoffRatio:0.9}")
+    double limiterBackoffRatio;
+
+    @Value("${rest.template.limiter.rttTolerance:2.0}")
+    double limiterRttTolerance;
+
+    //How long and how many requests over the limit may wait for a permit before they are rejected
+    @Value("${rest.template.limiter.maxWait:100ms}")
+    Duration limiterMaxWait;
+
+    @Value("${rest.template.limiter.maxQueue:50}")
+    int limiterMaxQueue;
+
+    //Upper bound for the bodies kept by the optional HTTP response cache
+    @Value("${rest.template.cache.maxSize:64MB}")
+    DataSize cacheMaxSize;
+
     @Bean
     OAuth2AuthorizedClientManager auth2AuthorizedClientManager(ClientRegistrationRepository clientRegistrationRepository,
                                                                OAuth2AuthorizedClientService oAuth2AuthorizedClientService ){
@@ -35,15 +173,195 @@ public class RestTemplateBuilderConfig {
         return authorizedClientManager;
     }
 
+    //Pooling connection manager, so TCP connections get reused across requests instead of opened per call
+    @Bean(destroyMethod = "close")
+    PoolingHttpClientConnectionManager poolingConnectionManager() {
+        return PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(poolMaxTotal)
+                .setMaxConnPerRoute(poolMaxPerRoute)
+                .build();
+    }
+
+    @Bean
+    ContentEncodingMetrics contentEncodingMetrics(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new ContentEncodingMetrics(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    //Apache HttpClient 5 is thread safe, one instance is shared by all requests
+    @Bean(destroyMethod = "close")
+    CloseableHttpClient beerHttpClient(PoolingHttpClientConnectionManager connectionManager,
+                                       ContentEncodingMetrics contentEncodingMetrics) {
+        HttpClientBuilder httpClientBuilder = HttpClients.custom();
+
+        if (compressionEnabled) {
+            //The keys become the Accept-Encoding header, in order of preference
+            LinkedHashMap<String, InputStreamFactory> decoders = new LinkedHashMap<>();
+            decoders.put("br", new BrotliInputStreamFactory());
+            decoders.put("gzip", GZIPInputStreamFactory.getInstance());
+            decoders.put("x-gzip", GZIPInputStreamFactory.getInstance());
+            decoders.put("deflate", DeflateInputStreamFactory.getInstance());
+
+            httpClientBuilder.setContentDecoderRegistry(decoders)
+                    .addExecInterceptorAfter(ChainElement.COMPRESS.name(), "wire-bytes",
+                            contentEncodingMetrics.wireBytesHandler())
+                    .addExecInterceptorBefore(ChainElement.COMPRESS.name(), "decoded-bytes",
+                            contentEncodingMetrics.decodedBytesHandler());
+        } else {
+            httpClientBuilder.disableContentCompression();
+        }
+
+        return httpClientBuilder
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionKeepAlive(TimeValue.ofMilliseconds(poolKeepAlive.toMillis()))
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeout.toMillis()))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeout.toMillis()))
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeout.toMillis()))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofMilliseconds(poolEvictIdleAfter.toMillis()))
+                .build();
+    }
+
+    //Opt-in with rest.template.transport=HTTP_2, the Apache HttpClient above is left unused then
+    @Bean
+    @ConditionalOnProperty(value = "rest.template.transport", havingValue = "HTTP_2")
+    JdkHttp2ClientHttpRequestFactory http2RequestFactory(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new JdkHttp2ClientHttpRequestFactory(connectTimeout, readTimeout, http2MaxConcurrentStreams,
+                meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    //Opt-in, caches GET responses and revalidates them with ETag / Last-Modified
+    @Bean
+    @ConditionalOnProperty(value = "rest.template.cache.enabled", havingValue = "true")
+    HttpCacheInterceptor httpCacheInterceptor() {
+        return new HttpCacheInterceptor(cacheMaxSize.toBytes());
+    }
+
+    //Timers per URI template and body sizes of every request, meters go to the actuator registry when there is one
+    @Bean
+    BeerClientMetricsInterceptor beerClientMetricsInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new BeerClientMetricsInterceptor(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry));
+    }
+
+    //Opt-in, the beer service has to accept gzipped request bodies
+    @Bean
+    @ConditionalOnProperty(value = "rest.template.compression.requestGzip", havingValue = "true")
+    GzipRequestInterceptor gzipRequestInterceptor(ContentEncodingMetrics contentEncodingMetrics) {
+        return new GzipRequestInterceptor(requestGzipMinSize.toBytes(), contentEncodingMetrics);
+    }
+
+    //Opt-in, adapts the requests in flight per host to its round trip times and overload responses
+    @Bean
+    @ConditionalOnProperty(value = "rest.template.limiter.enabled", havingValue = "true")
+    AdaptiveConcurrencyLimitInterceptor adaptiveConcurrencyLimitInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+        return new AdaptiveConcurrencyLimitInterceptor(meterRegistry.getIfAvailable(() -> Metrics.globalRegistry),
+                limiterInitialLimit, limiterMinLimit, limiterMaxLimit, limiterBackoffRatio, limiterRttTolerance,
+                limiterMaxWait, limiterMaxQueue);
+    }
+
+    //On by default, turn it off with rest.template.resilience.enabled=false
+    @Bean
+    @ConditionalOnProperty(value = "rest.template.resilience.enabled", havingValue = "true", matchIfMissing = true)
+    ResilienceInterceptor resilienceInterceptor(ObjectProvider<MeterRegistry> meterRegistry) {
+        CircuitBreakerRegistry circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .failureRateThreshold(circuitBreakerFailureRateThreshold)
+                .slidingWindowSize(circuitBreakerSlidingWindowSize)
+                .minimumNumberOfCalls(Math.min(10, circuitBreakerSlidingWindowSize))
+                .waitDurationInOpenState(circuitBreakerWaitInOpenState)
+                .build());
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.of(BulkheadConfig.custom()
+                .maxConcurrentCalls(bulkheadMaxConcurrentCalls)
+                .maxWaitDuration(Duration.ZERO) //Fail fast instead of queueing callers
+                .build());
+
+        //Breaker state, failure rate and bulkhead usage, tagged with the endpoint name
+        MeterRegistry registry = meterRegistry.getIfAvailable(() -> Metrics.globalRegistry);
+        TaggedCircuitBreakerMetrics.ofCircuitBreakerRegistry(circuitBreakerRegistry).bindTo(registry);
+        TaggedBulkheadMetrics.ofBulkheadRegistry(bulkheadRegistry).bindTo(registry);
+
+        return new ResilienceInterceptor(circuitBreakerRegistry, bulkheadRegistry, retryMaxAttempts,
+                IntervalFunction.ofExponentialRandomBackoff(retryInitialBackoff, 2.0, 0.5, retryMaxBackoff));
+    }
+
+    //Connection pool gauges, picked up by the actuator like any other MeterBinder
+    @Bean
+    MeterBinder poolingConnectionManagerMetrics(PoolingHttpClientConnectionManager connectionManager) {
+        return registry -> {
+            Gauge.builder("beer.client.pool.connections", connectionManager, cm -> cm.getTotalStats().getLeased())
+                    .tag("state", "leased").register(registry);
+            Gauge.builder("beer.client.pool.connections", connectionManager, cm -> cm.getTotalStats().getAvailable())
+                    .tag("state", "available").register(registry);
+            Gauge.builder("beer.client.pool.pending", connectionManager, cm -> cm.getTotalStats().getPending())
+                    .description("Requests waiting for a connection").register(registry);
+            Gauge.builder("beer.client.pool.max", connectionManager, cm -> cm.getTotalStats().getMax())
+                    .register(registry);
+        };
+    }
+
     //We'll be returning back a bean of RestTemplateBuilder which is configured with spring boot defaults.
     @Bean
     RestTemplateBuilder restTemplateBuilder(RestTemplateBuilderConfigurer configurer,
-                                            OAuthClientInterceptor interceptor){
+                                            OAuthClientInterceptor interceptor,
+                                            ObjectProvider<HttpCacheInterceptor> cacheInterceptor,
+                                            BeerClientMetricsInterceptor metricsInterceptor,
+                                            ObjectProvider<GzipRequestInterceptor> gzipRequestInterceptor,
+                                            ObjectProvider<AdaptiveConcurrencyLimitInterceptor> limitInterceptor,
+                                            ObjectProvider<ResilienceInterceptor> resilienceInterceptor,
+                                            CloseableHttpClient beerHttpClient,
+                                            ObjectProvider<JdkHttp2ClientHttpRequestFactory> http2RequestFactory,
+                                            ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder){
 
         assert rootUrl != null;
 
+        //Interceptors run in list order. The cache goes first, so a fresh hit doesn't even need a token.
+        //Metrics come after OAuth, so the timers hold the HTTP time only and token waits are timed on their own.
+        List<ClientHttpRequestInterceptor> interceptors = new ArrayList<>();
+        cacheInterceptor.ifAvailable(interceptors::add);
+        interceptors.add(interceptor);
+        interceptors.add(metricsInterceptor);
+        gzipRequestInterceptor.ifAvailable(interceptors::add);
+        limitInterceptor.ifAvailable(interceptors::add); //Before resilience, so one permit and one RTT cover all retries
+        resilienceInterceptor.ifAvailable(interceptors::add); //Its retries skip everything after it, the binary converter only
+
+        //Pooled connections instead of SimpleClientHttpRequestFactory, or HTTP/2 streams when the transport is HTTP_2.
+        //Apache requests can be aborted by a hedged call that lost, an interrupt does it for the JDK client.
+        Supplier<ClientHttpRequestFactory> requestFactory = () -> {
+            ClientHttpRequestFactory http2 = http2RequestFactory.getIfAvailable();
+            return http2 != null ? http2 : new HttpComponentsClientHttpRequestFactory(beerHttpClient) {
+                @Override
+                protected ClassicHttpRequest createHttpUriRequest(HttpMethod httpMethod, URI uri) {
+                    ClassicHttpRequest request = super.createHttpUriRequest(httpMethod, uri);
+                    if (request instanceof Cancellable cancellable) {
+                        RequestCancellation.onCancel(cancellable::cancel);
+                    }
+                    return request;
+                }
+            };
+        };
+
+        //The beer client's own ObjectMapper, with Blackbird and warmed up right here at startup.
+        //Not a bean, so Boot's shared ObjectMapper and the converters of Spring MVC stay as they are.
+        BeerJsonConverter beerJsonConverter = new BeerJsonConverter(
+                objectMapperBuilder.getIfAvailable(Jackson2ObjectMapperBuilder::json).build());
+
+        List<RestTemplateCustomizer> converterCustomizers = new ArrayList<>();
+        converterCustomizers.add(beerJsonConverter::replaceJsonConverter);
+        converterCustomizers.add(BeerBinaryConverter::removeDefaultBinaryConverters);
+        if (wireFormat != BeerWireFormat.JSON) {
+            //Boot's builder is a prototype, getIfAvailable hands out a fresh one for the binary mapper
+            BeerBinaryConverter beerBinaryConverter = new BeerBinaryConverter(wireFormat,
+                    objectMapperBuilder.getIfAvailable(Jackson2ObjectMapperBuilder::json),
+                    beerJsonConverter.getObjectMapper());
+            converterCustomizers.add(beerBinaryConverter::addBeforeJsonConverter);
+            //Last, resends a refused binary body as JSON. A resilience retry that gets the 415 passes it on as it is.
+            interceptors.add(beerBinaryConverter);
+        }
+
         return configurer.configure(new RestTemplateBuilder())
-                .additionalInterceptors(interceptor) //Every RestTemplate we build from the builder will have this interceptor
+                .requestFactory(requestFactory)
+                .additionalCustomizers(converterCustomizers)
+                .additionalInterceptors(interceptors) //Every RestTemplate we build from the builder will have these interceptors
                 .uriTemplateHandler(new DefaultUriBuilderFactory(rootUrl));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,45 @@
+package guru.springframework.spring6resttemplate.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.RemoveAuthorizedClientOAuth2AuthorizationFailureHandler;
+import org.springframework.security.oauth2.client.web.reactive.function.client.ServletOAuth2AuthorizedClientExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+
+@Configuration
+public class WebClientConfig {
+
+    //Same root URL as the RestTemplate
+    @Value("${rest.template.rootUrl}")
+    String rootUrl;
+
+    //WebClient for the ReactiveBeerClient, built from the Boot configured builder (codecs, observations)
+    @Bean
+    WebClient beerWebClient(WebClient.Builder webClientBuilder, OAuth2AuthorizedClientManager auth2AuthorizedClientManager,
+                            OAuth2AuthorizedClientService authorizedClientService,
+                            OAuthClientInterceptor oAuthClientInterceptor) {
+
+        //Adds the bearer token of the springauth registration, using the same manager and token store as
+        //OAuthClientInterceptor. Without a principal the filter would authorize the anonymous user, we use the
+        //interceptor's, so both store and find the token under the client id.
+        ServletOAuth2AuthorizedClientExchangeFilterFunction oauth =
+                new ServletOAuth2AuthorizedClientExchangeFilterFunction(auth2AuthorizedClientManager);
+        oauth.setDefaultClientRegistrationId("springauth");
+
+        //A 401 from the server drops the stored token, the next request gets a new one.
+        //The manager-only constructor leaves failures unhandled, the rejected token would be reused.
+        oauth.setAuthorizationFailureHandler(new RemoveAuthorizedClientOAuth2AuthorizationFailureHandler(
+                (clientRegistrationId, principal, attributes) ->
+                        authorizedClientService.removeAuthorizedClient(clientRegistrationId, principal.getName())));
+
+        return webClientBuilder
+                .baseUrl(rootUrl)
+                .defaultRequest(request -> request.attributes(
+                        ServletOAuth2AuthorizedClientExchangeFilterFunction.authentication(oAuthClientInterceptor.getPrincipal())))
+                .apply(oauth.oauth2Configuration())
+                .build();
+    }
+}
@@ -0,0 +1,245 @@
+package guru.springframework.spring6resttemplate.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.RandomAccess;
+import java.util.UUID;
+import java.util.stream.Collector;
+
+/**
+ * Column oriented, read-only list of beers for large reads. Every field is kept in a primitive array instead of
+ * one BeerDTO (plus UUID, Integer, BigDecimal and LocalDateTime objects) per row:
+ * <ul>
+ *     <li>ids as two longs</li>
+ *     <li>prices as longs scaled by 100, a price with more decimals is kept as it is on the side</li>
+ *     <li>timestamps as epoch seconds (UTC) plus nanos</li>
+ *     <li>beer styles as enum ordinals</li>
+ *     <li>numeric UPCs as a long plus their digit count, other UPCs as strings</li>
+ *     <li>beer names de-duplicated within the batch</li>
+ * </ul>
+ * A row takes about 70 bytes against the ~400 of a BeerDTO, as BeerBatchTest measures with JOL. {@link #get(int)}
+ * builds a new BeerDTO on every call, prices come back with scale 2.
+ */
+public final class BeerBatch extends AbstractList<BeerDTO> implements RandomAccess {
+
+    private static final int NULL_INT = Integer.MIN_VALUE;
+    private static final long NULL_LONG = Long.MIN_VALUE;
+    private static final byte NULL_BYTE = -1;
+    private static final int PRICE_SCALE = 2;
+    private static final BeerStyle[] STYLES = BeerStyle.values();
+
+    private final int size;
+    private final long[] idMostSigBits;
+    private final long[] idLeastSigBits;
+    private final BitSet nullIds;
+    private final int[] versions;
+    private final String[] beerNames;
+    private final byte[] beerStyles;
+    private final long[] upcDigits;
+    private final byte[] upcLengths;
+    private final Map<Integer, String> otherUpcs;
+    private final int[] quantitiesOnHand;
+    private final long[] prices;
+    private final Map<Integer, BigDecimal> otherPrices;
+    private final long[] createdDates;
+    private final int[] createdDateNanos;
+    private final long[] updateDates;
+    private final int[] updateDateNanos;
+
+    private BeerBatch(Builder builder) {
+        this.size = builder.size;
+        this.idMostSigBits = Arrays.copyOf(builder.idMostSigBits, size);
+        this.idLeastSigBits = Arrays.copyOf(builder.idLeastSigBits, size);
+        this.nullIds = (BitSet) builder.nullIds.clone();
+        this.versions = Arrays.copyOf(builder.versions, size);
+        this.beerNames = Arrays.copyOf(builder.beerNames, size);
+        this.beerStyles = Arrays.copyOf(builder.beerStyles, size);
+        this.upcDigits = Arrays.copyOf(builder.upcDigits, size);
+        this.upcLengths = Arrays.copyOf(builder.upcLengths, size);
+        this.otherUpcs = Map.copyOf(builder.otherUpcs);
+        this.quantitiesOnHand = Arrays.copyOf(builder.quantitiesOnHand, size);
+        this.prices = Arrays.copyOf(builder.prices, size);
+        this.otherPrices = Map.copyOf(builder.otherPrices);
+        this.createdDates = Arrays.copyOf(builder.createdDates, size);
+        this.createdDateNanos = Arrays.copyOf(builder.createdDateNanos, size);
+        this.updateDates = Arrays.copyOf(builder.updateDates, size);
+        this.updateDateNanos = Arrays.copyOf(builder.updateDateNanos, size);
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public static BeerBatch of(Iterable<BeerDTO> beers) {
+        Builder builder = builder();
+        beers.forEach(builder::add);
+        return builder.build();
+    }
+
+    //Collects a stream, e.g. streamBeers(...), straight into columns without keeping the BeerDTOs
+    public static Collector<BeerDTO, Builder, BeerBatch> collector() {
+        return Collector.of(BeerBatch::builder, Builder::add, Builder::addAll, Builder::build);
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public BeerDTO get(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of bounds for length " + size);
+        }
+
+        return BeerDTO.builder()
+                .id(nullIds.get(index) ? null : new UUID(idMostSigBits[index], idLeastSigBits[index]))
+                .version(versions[index] == NULL_INT ? null : versions[index])
+                .beerName(beerNames[index])
+                .beerStyle(beerStyles[index] == NULL_BYTE ? null : STYLES[beerStyles[index]])
+                .upc(upc(index))
+                .quantityOnHand(quantitiesOnHand[index] == NULL_INT ? null : quantitiesOnHand[index])
+                .price(price(index))
+                .createdDate(toDateTime(createdDates[index], createdDateNanos[index]))
+                .updateDate(toDateTime(updateDates[index], updateDateNanos[index]))
+                .build();
+    }
+
+    private String upc(int index) {
+        if (upcLengths[index] == NULL_BYTE) {
+            return otherUpcs.get(index);
+        }
+
+        //Leading zeros are part of a UPC, so the digit count is restored with padding
+        String digits = Long.toString(upcDigits[index]);
+        return digits.length() < upcLengths[index] ? "0".repeat(upcLengths[index] - digits.length()) + digits : digits;
+    }
+
+    private BigDecimal price(int index) {
+        return prices[index] == NULL_LONG ? otherPrices.get(index) : BigDecimal.valueOf(prices[index], PRICE_SCALE);
+    }
+
+    //Long.MIN_VALUE seconds is far outside the LocalDateTime range, so it can stand for null
+    private static LocalDateTime toDateTime(long epochSecond, int nanos) {
+        return epochSecond == NULL_LONG ? null : LocalDateTime.ofEpochSecond(epochSecond, nanos, ZoneOffset.UTC);
+    }
+
+    /**
+     * Appends beers column by column, the arrays grow like an ArrayList and are trimmed by {@link #build()}.
+     * Not thread safe.
+     */
+    public static final class Builder {
+
+        private int size;
+        private long[] idMostSigBits = new long[16];
+        private long[] idLeastSigBits = new long[16];
+        private final BitSet nullIds = new BitSet();
+        private int[] versions = new int[16];
+        private String[] beerNames = new String[16];
+        private byte[] beerStyles = new byte[16];
+        private long[] upcDigits = new long[16];
+        private byte[] upcLengths = new byte[16];
+        private final Map<Integer, String> otherUpcs = new HashMap<>();
+        private int[] quantitiesOnHand = new int[16];
+        private long[] prices = new long[16];
+        private final Map<Integer, BigDecimal> otherPrices = new HashMap<>();
+        private long[] createdDates = new long[16];
+        private int[] createdDateNanos = new int[16];
+        private long[] updateDates = new long[16];
+        private int[] updateDateNanos = new int[16];
+
+        //Names repeat a lot across a catalogue, every distinct name is kept once
+        private final Map<String, String> beerNameDictionary = new HashMap<>();
+
+        private Builder() {
+        }
+
+        public Builder add(BeerDTO beer) {
+            if (size == versions.length) {
+                grow();
+            }
+            int row = size++;
+
+            if (beer.getId() == null) {
+                nullIds.set(row);
+            } else {
+                idMostSigBits[row] = beer.getId().getMostSignificantBits();
+                idLeastSigBits[row] = beer.getId().getLeastSignificantBits();
+            }
+            versions[row] = beer.getVersion() == null ? NULL_INT : beer.getVersion();
+            beerNames[row] = beer.getBeerName() == null ? null
+                    : beerNameDictionary.computeIfAbsent(beer.getBeerName(), name -> name);
+            beerStyles[row] = beer.getBeerStyle() == null ? NULL_BYTE : (byte) beer.getBeerStyle().ordinal();
+            addUpc(row, beer.getUpc());
+            quantitiesOnHand[row] = beer.getQuantityOnHand() == null ? NULL_INT : beer.getQuantityOnHand();
+            addPrice(row, beer.getPrice());
+            createdDates[row] = beer.getCreatedDate() == null ? NULL_LONG : beer.getCreatedDate().toEpochSecond(ZoneOffset.UTC);
+            createdDateNanos[row] = beer.getCreatedDate() == null ? 0 : beer.getCreatedDate().getNano();
+            updateDates[row] = beer.getUpdateDate() == null ? NULL_LONG : beer.getUpdateDate().toEpochSecond(ZoneOffset.UTC);
+            updateDateNanos[row] = beer.getUpdateDate() == null ? 0 : beer.getUpdateDate().getNano();
+            return this;
+        }
+
+        public Builder addAll(Builder other) {
+            BeerBatch batch = other.build();
+            batch.forEach(this::add);
+            return this;
+        }
+
+        public BeerBatch build() {
+            return new BeerBatch(this);
+        }
+
+        private void addUpc(int row, String upc) {
+            if (upc != null && !upc.isEmpty() && upc.length() <= 18 && upc.chars().allMatch(c -> c >= '0' && c <= '9')) {
+                upcDigits[row] = Long.parseLong(upc);
+                upcLengths[row] = (byte) upc.length();
+            } else {
+                upcLengths[row] = NULL_BYTE;
+                if (upc != null) {
+                    otherUpcs.put(row, upc);
+                }
+            }
+        }
+
+        private void addPrice(int row, BigDecimal price) {
+            prices[row] = NULL_LONG;
+            if (price == null) {
+                return;
+            }
+            try {
+                long scaled = price.movePointRight(PRICE_SCALE).longValueExact();
+                if (scaled != NULL_LONG) {
+                    prices[row] = scaled;
+                    return;
+                }
+            } catch (ArithmeticException e) {
+                //More than two decimals or too large, kept as it is below
+            }
+            otherPrices.put(row, price);
+        }
+
+        private void grow() {
+            int capacity = versions.length * 2;
+            idMostSigBits = Arrays.copyOf(idMostSigBits, capacity);
+            idLeastSigBits = Arrays.copyOf(idLeastSigBits, capacity);
+            versions = Arrays.copyOf(versions, capacity);
+            beerNames = Arrays.copyOf(beerNames, capacity);
+            beerStyles = Arrays.copyOf(beerStyles, capacity);
+            upcDigits = Arrays.copyOf(upcDigits, capacity);
+            upcLengths = Arrays.copyOf(upcLengths, capacity);
+            quantitiesOnHand = Arrays.copyOf(quantitiesOnHand, capacity);
+            prices = Arrays.copyOf(prices, capacity);
+            createdDates = Arrays.copyOf(createdDates, capacity);
+            createdDateNanos = Arrays.copyOf(createdDateNanos, capacity);
+            updateDates = Arrays.copyOf(updateDates, capacity);
+            updateDateNanos = Arrays.copyOf(updateDateNanos, capacity);
+        }
+    }
+}
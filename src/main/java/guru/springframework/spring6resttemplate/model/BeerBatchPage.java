@@ -0,0 +1,57 @@
+package guru.springframework.spring6resttemplate.model;
+
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.PageRequest;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * A page whose content is a {@link BeerBatch}. PageImpl copies its content into an ArrayList, so the page is
+ * created empty with the paging metadata and the content methods read from the batch instead.
+ */
+public class BeerBatchPage extends PageImpl<BeerDTO> {
+
+    private final BeerBatch batch;
+
+    public BeerBatchPage(BeerBatch batch, int page, int size, long total) {
+        super(Collections.emptyList(), PageRequest.of(page, size), total);
+        this.batch = batch;
+    }
+
+    public BeerBatch getBatch() {
+        return batch;
+    }
+
+    @Override
+    public List<BeerDTO> getContent() {
+        return batch;
+    }
+
+    @Override
+    public int getNumberOfElements() {
+        return batch.size();
+    }
+
+    @Override
+    public boolean hasContent() {
+        return !batch.isEmpty();
+    }
+
+    @Override
+    public Iterator<BeerDTO> iterator() {
+        return batch.iterator();
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        return obj instanceof BeerBatchPage that && super.equals(that) && batch.equals(that.batch);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(super.hashCode(), batch);
+    }
+}
@@ -1,7 +1,9 @@
 package guru.springframework.spring6resttemplate.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -10,8 +12,12 @@ import java.util.UUID;
 /**
  * Created by jt, Spring Framework Guru.
  */
-@Builder
+//Jackson binds a beer with the no-args constructor and the setters, which Blackbird turns into generated lambdas.
+//Through the all-args constructor it would fall back to reflection.
+@Builder(toBuilder = true)
 @Data
+@NoArgsConstructor
+@AllArgsConstructor
 public class BeerDTO {
     private UUID id;
     private Integer version;
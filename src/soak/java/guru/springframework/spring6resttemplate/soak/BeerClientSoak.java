@@ -0,0 +1,352 @@
+package guru.springframework.spring6resttemplate.soak;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import guru.springframework.spring6resttemplate.Spring6ResttemplateApplication;
+import guru.springframework.spring6resttemplate.client.BeerClient;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.stub.BeerStubServer;
+import guru.springframework.spring6resttemplate.stub.TestConfigurationExcludeFilter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Drives the real BeerClientImpl, with its pooled request factory, OAuthClientInterceptor and the rest of the
+ * interceptor chain, against BeerStubServer at a fixed request rate for a long time. It shows what microbenchmarks
+ * don't: connection churn, token refreshes and GC pressure under sustained concurrency.
+ * <p>
+ * The workload is open: requests start on schedule whether or not earlier ones are done, and latency is measured
+ * from the scheduled start, so a stalled client shows up in the percentiles instead of lowering the rate.
+ * Requests beyond soak.maxOutstanding in flight are dropped and counted.
+ * <p>
+ * Every reportInterval a line with the interval's throughput, latencies, GC time and stub counters is printed,
+ * and at the end a JSON report with the settings, totals and all intervals is written to soak.reportDir.
+ * Reports of runs with the same settings can be diffed.
+ * <p>
+ * Run with {@code ./mvnw -Psoak test-compile exec:exec}, settings as {@code -Dsoak.duration=5m -Dsoak.rate=500},
+ * see {@link SoakSettings}.
+ */
+public class BeerClientSoak {
+
+    enum Operation {READ, LIST, WRITE}
+
+    //Microseconds, up to an hour
+    private static final long HIGHEST_LATENCY = TimeUnit.HOURS.toMicros(1);
+
+    private final SoakSettings settings;
+    private final BeerStubServer stub;
+    private final BeerClient beerClient;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<Operation, Recorder> recorders = new EnumMap<>(Operation.class);
+    private final Map<Operation, Histogram> totals = new EnumMap<>(Operation.class);
+    private final Map<Operation, LongAdder> errors = new EnumMap<>(Operation.class);
+    private final Map<String, LongAdder> errorTypes = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger outstanding = new AtomicInteger();
+    private final List<Map<String, Object>> intervals = new ArrayList<>();
+
+    private final ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "soak-request");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    //Set when the warm up is over, only touched by the reporting thread from then on
+    private GcMonitor gcMonitor;
+    private long measureStart;
+    private long lastReport;
+    private long lastGcMillis;
+    private long lastErrors;
+    private int tokenRequestsAtStart;
+    private int connectionsAtStart;
+    private int failedRequestsAtStart;
+    private int stubRequestsAtStart;
+
+    BeerClientSoak(SoakSettings settings, BeerStubServer stub, BeerClient beerClient, MeterRegistry meterRegistry) {
+        this.settings = settings;
+        this.stub = stub;
+        this.beerClient = beerClient;
+        this.meterRegistry = meterRegistry;
+        for (Operation operation : Operation.values()) {
+            recorders.put(operation, new Recorder(HIGHEST_LATENCY, 3));
+            totals.put(operation, new Histogram(HIGHEST_LATENCY, 3));
+            errors.put(operation, new LongAdder());
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        SoakSettings settings = SoakSettings.fromSystemProperties();
+
+        try (BeerStubServer stub = new BeerStubServer(settings.catalogueSize())
+                .setLatency(settings.latency(), settings.latencyJitter())
+                .setSlowResponses(settings.slowRate(), settings.slowLatency())
+                .setErrorRate(settings.errorRate())
+                .setTokenLifetime(settings.tokenLifetime())
+                .start();
+             ConfigurableApplicationContext context = new SpringApplicationBuilder(Spring6ResttemplateApplication.class)
+                     .initializers(TestConfigurationExcludeFilter::register)
+                     .run(Stream.concat(Stream.of(stub.commandLineArgs()), Stream.of(settings.applicationArgs()))
+                             .toArray(String[]::new))) {
+
+            //The primary BeerClient, so decorators switched on with soak.applicationArgs are part of the run
+            BeerClientSoak soak = new BeerClientSoak(settings, stub, context.getBean(BeerClient.class),
+                    context.getBean(MeterRegistry.class));
+            Path report = soak.run();
+            System.out.println("Soak report written to " + report.toAbsolutePath());
+        }
+    }
+
+    Path run() throws InterruptedException, IOException {
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor();
+        long warmupNanos = settings.warmup().toNanos();
+        long intervalNanos = settings.reportInterval().toNanos();
+        reporter.schedule(this::startMeasurement, warmupNanos, TimeUnit.NANOSECONDS);
+        reporter.scheduleAtFixedRate(this::reportInterval, warmupNanos + intervalNanos, intervalNanos,
+                TimeUnit.NANOSECONDS);
+
+        System.out.printf("Soak: %d requests/s for %s after %s warm up, mix read/list/write %d/%d/%d%n",
+                settings.rate(), settings.duration(), settings.warmup(),
+                settings.readWeight(), settings.listWeight(), settings.writeWeight());
+        dispatch(warmupNanos + settings.duration().toNanos());
+
+        //Let the requests in flight finish, then take the last interval
+        executor.shutdown();
+        executor.awaitTermination(1, TimeUnit.MINUTES);
+        reporter.shutdown();
+        reporter.awaitTermination(1, TimeUnit.MINUTES);
+        if (gcMonitor == null) {
+            throw new IllegalStateException("The run ended before its warm up of " + settings.warmup() + ", nothing was measured");
+        }
+        reportInterval();
+
+        Path report = writeReport();
+        gcMonitor.close();
+        return report;
+    }
+
+    //Starts request i at start + i / rate, never waiting for earlier requests
+    private void dispatch(long runNanos) {
+        long period = TimeUnit.SECONDS.toNanos(1) / settings.rate();
+        int totalWeight = settings.readWeight() + settings.listWeight() + settings.writeWeight();
+        long start = System.nanoTime();
+
+        for (long i = 0; ; i++) {
+            long scheduled = start + i * period;
+            if (scheduled - start >= runNanos) {
+                return;
+            }
+            long wait = scheduled - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            if (outstanding.incrementAndGet() > settings.maxOutstanding()) {
+                outstanding.decrementAndGet();
+                dropped.increment();
+                continue;
+            }
+            Operation operation = pick(ThreadLocalRandom.current().nextInt(totalWeight));
+            executor.execute(() -> execute(operation, scheduled));
+        }
+    }
+
+    private Operation pick(int draw) {
+        if (draw < settings.readWeight()) {
+            return Operation.READ;
+        }
+        return draw < settings.readWeight() + settings.listWeight() ? Operation.LIST : Operation.WRITE;
+    }
+
+    private void execute(Operation operation, long scheduled) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        try {
+            switch (operation) {
+                //The stub's beers have the ids 0 to catalogueSize - 1
+                case READ -> beerClient.getBeerById(new UUID(0, random.nextLong(settings.catalogueSize())));
+                case LIST -> {
+                    int pages = (int) Math.max(1, (settings.catalogueSize() + settings.pageSize() - 1) / settings.pageSize());
+                    beerClient.listBeers(null, null, true, random.nextInt(pages) + 1, settings.pageSize());
+                }
+                case WRITE -> {
+                    BeerDTO beer = stub.beer(random.nextLong(settings.catalogueSize()));
+                    if (random.nextBoolean()) {
+                        beerClient.createBeer(beer.toBuilder().id(null).build());
+                    } else {
+                        beerClient.updateBeer(beer);
+                    }
+                }
+            }
+        } catch (RuntimeException e) {
+            errors.get(operation).increment();
+            errorTypes.computeIfAbsent(e.getClass().getSimpleName(), type -> new LongAdder()).increment();
+        } finally {
+            long latency = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - scheduled);
+            recorders.get(operation).recordValue(Math.min(latency, HIGHEST_LATENCY));
+            outstanding.decrementAndGet();
+        }
+    }
+
+    //Drops what the warm up recorded and takes the baselines
+    private void startMeasurement() {
+        recorders.values().forEach(Recorder::reset);
+        errors.values().forEach(LongAdder::reset);
+        errorTypes.clear();
+        dropped.reset();
+        tokenRequestsAtStart = stub.getTokenRequests();
+        connectionsAtStart = stub.getConnections();
+        failedRequestsAtStart = stub.getFailedRequests();
+        stubRequestsAtStart = stub.getRequests();
+        gcMonitor = new GcMonitor();
+        measureStart = System.nanoTime();
+        lastReport = measureStart;
+    }
+
+    private synchronized void reportInterval() {
+        long now = System.nanoTime();
+        double seconds = (now - lastReport) / 1e9;
+        if (gcMonitor == null || seconds <= 0) {
+            return;
+        }
+        lastReport = now;
+
+        Map<String, Object> interval = new LinkedHashMap<>();
+        interval.put("elapsedSeconds", Math.round((now - measureStart) / 1e9));
+        long requests = 0;
+        Histogram all = new Histogram(HIGHEST_LATENCY, 3);
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = recorders.get(operation).getIntervalHistogram();
+            totals.get(operation).add(histogram);
+            all.add(histogram);
+            requests += histogram.getTotalCount();
+            interval.put(key(operation) + "P99Ms", millis(histogram.getValueAtPercentile(99)));
+        }
+        interval.put("throughputPerSecond", Math.round(requests / seconds));
+        interval.put("p50Ms", millis(all.getValueAtPercentile(50)));
+        interval.put("p99Ms", millis(all.getValueAtPercentile(99)));
+        interval.put("maxMs", millis(all.getMaxValue()));
+        long errorCount = errors.values().stream().mapToLong(LongAdder::sum).sum();
+        interval.put("errors", errorCount - lastErrors);
+        lastErrors = errorCount;
+        interval.put("dropped", dropped.sum());
+        long gcMillis = gcMonitor.totalDurationMillis();
+        interval.put("gcMs", gcMillis - lastGcMillis);
+        lastGcMillis = gcMillis;
+        interval.put("heapUsedMb", GcMonitor.heapUsed() / (1024 * 1024));
+        interval.put("tokenRequests", stub.getTokenRequests() - tokenRequestsAtStart);
+        interval.put("newConnections", stub.getConnections() - connectionsAtStart);
+        interval.put("leasedConnections", gauge("beer.client.pool.connections", "leased"));
+        interval.put("outstanding", outstanding.get());
+        intervals.add(interval);
+
+        System.out.println(interval);
+    }
+
+    private Path writeReport() throws IOException {
+        double seconds = (lastReport - measureStart) / 1e9;
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("finishedAt", Instant.now());
+        report.put("java", System.getProperty("java.vm.name") + " " + Runtime.version());
+        report.put("jvmArguments", ManagementFactory.getRuntimeMXBean().getInputArguments());
+        report.put("settings", settings);
+        report.put("measuredSeconds", Math.round(seconds));
+
+        long requests = 0;
+        Map<String, Object> operations = new LinkedHashMap<>();
+        for (Operation operation : Operation.values()) {
+            Histogram histogram = totals.get(operation);
+            requests += histogram.getTotalCount();
+
+            Map<String, Object> summary = new LinkedHashMap<>();
+            summary.put("count", histogram.getTotalCount());
+            summary.put("errors", errors.get(operation).sum());
+            summary.put("meanMs", millis(Math.round(histogram.getMean())));
+            summary.put("p50Ms", millis(histogram.getValueAtPercentile(50)));
+            summary.put("p90Ms", millis(histogram.getValueAtPercentile(90)));
+            summary.put("p99Ms", millis(histogram.getValueAtPercentile(99)));
+            summary.put("p999Ms", millis(histogram.getValueAtPercentile(99.9)));
+            summary.put("p9999Ms", millis(histogram.getValueAtPercentile(99.99)));
+            summary.put("maxMs", millis(histogram.getMaxValue()));
+            operations.put(key(operation), summary);
+        }
+        report.put("requests", requests);
+        report.put("throughputPerSecond", Math.round(requests / seconds));
+        report.put("dropped", dropped.sum());
+        report.put("operations", operations);
+
+        Map<String, Long> errorCounts = new LinkedHashMap<>();
+        errorTypes.forEach((type, count) -> errorCounts.put(type, count.sum()));
+        report.put("errors", errorCounts);
+        report.put("gc", gcMonitor.summary(seconds));
+
+        Map<String, Object> stubCounts = new LinkedHashMap<>();
+        //More than requests when the client hedges or retries
+        stubCounts.put("requests", stub.getRequests() - stubRequestsAtStart);
+        stubCounts.put("newConnections", stub.getConnections() - connectionsAtStart);
+        stubCounts.put("tokenRequests", stub.getTokenRequests() - tokenRequestsAtStart);
+        stubCounts.put("injectedErrors", stub.getFailedRequests() - failedRequestsAtStart);
+        report.put("stub", stubCounts);
+
+        Timer tokenAcquisition = meterRegistry.find("beer.client.token.acquisition").timer();
+        if (tokenAcquisition != null) {
+            report.put("tokenAcquisitionMaxMs", tokenAcquisition.max(TimeUnit.MILLISECONDS));
+        }
+        report.put("intervals", intervals);
+
+        Path dir = Path.of(settings.reportDir());
+        Files.createDirectories(dir);
+        Path file = dir.resolve("soak-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss")) + ".json");
+        new ObjectMapper()
+                .registerModule(new JavaTimeModule())
+                .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+                .disable(SerializationFeature.WRITE_DURATIONS_AS_TIMESTAMPS)
+                .enable(SerializationFeature.INDENT_OUTPUT)
+                .writeValue(file.toFile(), report);
+        return file;
+    }
+
+    private Double gauge(String name, String state) {
+        Gauge gauge = meterRegistry.find(name).tag("state", state).gauge();
+        return gauge == null ? null : gauge.value();
+    }
+
+    private static String key(Operation operation) {
+        return operation.name().toLowerCase(Locale.ROOT);
+    }
+
+    private static double millis(long micros) {
+        return Math.round(micros / 10.0) / 100.0;
+    }
+}
@@ -0,0 +1,117 @@
+package guru.springframework.spring6resttemplate.soak;
+
+import com.sun.management.GarbageCollectionNotificationInfo;
+import com.sun.management.GcInfo;
+import org.HdrHistogram.Histogram;
+
+import javax.management.NotificationEmitter;
+import javax.management.NotificationListener;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Listens to the JVM's GC notifications for the length of a soak run. It keeps the GC durations in a histogram and
+ * counts collections per collector. Allocated bytes are estimated from what every collection freed plus how much the
+ * heap grew, which holds up over minutes without a profiler attached.
+ * <p>
+ * The durations are those the JVM reports per collection. They are pauses for the young and full collections and
+ * the whole cycle for concurrent collectors.
+ */
+class GcMonitor implements AutoCloseable {
+
+    private final List<NotificationEmitter> emitters = new ArrayList<>();
+    private final NotificationListener listener = (notification, handback) -> {
+        if (GarbageCollectionNotificationInfo.GARBAGE_COLLECTION_NOTIFICATION.equals(notification.getType())) {
+            record(GarbageCollectionNotificationInfo.from((CompositeData) notification.getUserData()));
+        }
+    };
+
+    //Milliseconds, the resolution GcInfo reports in
+    private final Histogram durations = new Histogram(3_600_000L, 3);
+    private final Map<String, AtomicLong> collections = new ConcurrentHashMap<>();
+    private final AtomicLong totalDurationMillis = new AtomicLong();
+    private final AtomicLong freedBytes = new AtomicLong();
+    private final long heapUsedAtStart;
+
+    GcMonitor() {
+        heapUsedAtStart = heapUsed();
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            if (gc instanceof NotificationEmitter emitter) {
+                emitter.addNotificationListener(listener, null, null);
+                emitters.add(emitter);
+            }
+        }
+    }
+
+    private void record(GarbageCollectionNotificationInfo info) {
+        GcInfo gcInfo = info.getGcInfo();
+        collections.computeIfAbsent(info.getGcName(), name -> new AtomicLong()).incrementAndGet();
+        totalDurationMillis.addAndGet(gcInfo.getDuration());
+        synchronized (durations) {
+            durations.recordValue(Math.min(gcInfo.getDuration(), durations.getHighestTrackableValue()));
+        }
+
+        long freed = 0;
+        for (Map.Entry<String, MemoryUsage> before : gcInfo.getMemoryUsageBeforeGc().entrySet()) {
+            MemoryUsage after = gcInfo.getMemoryUsageAfterGc().get(before.getKey());
+            if (after != null) {
+                freed += before.getValue().getUsed() - after.getUsed();
+            }
+        }
+        //Positive sum only, a collection that promotes into a pool shows growth there
+        freedBytes.addAndGet(Math.max(0, freed));
+    }
+
+    long totalCollections() {
+        return collections.values().stream().mapToLong(AtomicLong::get).sum();
+    }
+
+    long totalDurationMillis() {
+        return totalDurationMillis.get();
+    }
+
+    long allocatedBytes() {
+        return freedBytes.get() + heapUsed() - heapUsedAtStart;
+    }
+
+    static long heapUsed() {
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+
+    Map<String, Object> summary(double seconds) {
+        Map<String, Object> summary = new LinkedHashMap<>();
+        Map<String, Long> perCollector = new LinkedHashMap<>();
+        collections.forEach((name, count) -> perCollector.put(name, count.get()));
+        summary.put("collections", perCollector);
+        synchronized (durations) {
+            summary.put("totalMs", totalDurationMillis());
+            summary.put("p50Ms", durations.getValueAtPercentile(50));
+            summary.put("p99Ms", durations.getValueAtPercentile(99));
+            summary.put("maxMs", durations.getMaxValue());
+        }
+        long allocated = allocatedBytes();
+        summary.put("allocatedMb", allocated / (1024 * 1024));
+        summary.put("allocationRateMbPerSecond", Math.round(allocated / (1024.0 * 1024.0) / seconds * 10) / 10.0);
+        summary.put("heapUsedAtEndMb", heapUsed() / (1024 * 1024));
+        return summary;
+    }
+
+    @Override
+    public void close() {
+        for (NotificationEmitter emitter : emitters) {
+            try {
+                emitter.removeNotificationListener(listener);
+            } catch (Exception e) {
+                //Already gone, nothing to clean up
+            }
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package guru.springframework.spring6resttemplate.soak;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.util.StringUtils;
+
+import java.time.Duration;
+
+/**
+ * Settings of a soak run, read from soak.* system properties. Durations take the Spring Boot form (500ms, 30s, 30m).
+ * They are written to the report as they are, so two reports tell whether their runs are comparable.
+ *
+ * @param duration          length of the measured run, after the warm up
+ * @param warmup            run at the same rate before measuring, lets the JIT, the pool and the token settle
+ * @param rate              requests started per second, whatever the client's latency (open workload model)
+ * @param readWeight        relative share of getBeerById
+ * @param listWeight        relative share of listBeers pages
+ * @param writeWeight       relative share of createBeer / updateBeer
+ * @param pageSize          page size of listBeers
+ * @param catalogueSize     beers the stub serves
+ * @param latency           time the stub takes for every request
+ * @param latencyJitter     random extra time on top of latency, 0 up to this
+ * @param slowRate          share of beer API requests the stub answers after slowLatency, like a slow replica
+ * @param slowLatency       time those slow requests take instead of latency
+ * @param errorRate         share of beer API requests the stub answers with 503
+ * @param tokenLifetime     lifetime of the stub's access tokens
+ * @param maxOutstanding    requests in flight before new ones are dropped and counted instead of piling up
+ * @param reportInterval    how often the interval line is printed and kept in the report
+ * @param reportDir         where the JSON report goes
+ * @param applicationArgs   extra Spring arguments, space separated, e.g. --rest.template.transport=HTTP_2
+ */
+record SoakSettings(Duration duration, Duration warmup, int rate, int readWeight, int listWeight, int writeWeight,
+                    int pageSize, long catalogueSize, Duration latency, Duration latencyJitter, double slowRate,
+                    Duration slowLatency, double errorRate,
+                    Duration tokenLifetime, int maxOutstanding, Duration reportInterval, String reportDir,
+                    String[] applicationArgs) {
+
+    //Nothing would be measured otherwise, the report has no numbers to take
+    SoakSettings {
+        if (duration.isNegative() || duration.isZero()) {
+            throw new IllegalArgumentException("soak.duration has to be positive, was " + duration);
+        }
+        if (warmup.isNegative()) {
+            throw new IllegalArgumentException("soak.warmup can't be negative, was " + warmup);
+        }
+        if (rate <= 0) {
+            throw new IllegalArgumentException("soak.rate has to be positive, was " + rate);
+        }
+        if (reportInterval.isNegative() || reportInterval.isZero()) {
+            throw new IllegalArgumentException("soak.reportInterval has to be positive, was " + reportInterval);
+        }
+    }
+
+    static SoakSettings fromSystemProperties() {
+        return new SoakSettings(
+                duration("soak.duration", "30m"),
+                duration("soak.warmup", "1m"),
+                Integer.parseInt(property("soak.rate", "200")),
+                Integer.parseInt(property("soak.mix.read", "80")),
+                Integer.parseInt(property("soak.mix.list", "15")),
+                Integer.parseInt(property("soak.mix.write", "5")),
+                Integer.parseInt(property("soak.pageSize", "25")),
+                Long.parseLong(property("soak.catalogueSize", "10000")),
+                duration("soak.latency", "5ms"),
+                duration("soak.latencyJitter", "5ms"),
+                Double.parseDouble(property("soak.slowRate", "0.0")),
+                duration("soak.slowLatency", "200ms"),
+                Double.parseDouble(property("soak.errorRate", "0.0")),
+                duration("soak.tokenLifetime", "5m"),
+                Integer.parseInt(property("soak.maxOutstanding", "5000")),
+                duration("soak.reportInterval", "10s"),
+                property("soak.reportDir", "target/soak"),
+                StringUtils.tokenizeToStringArray(property("soak.applicationArgs", ""), " "));
+    }
+
+    private static String property(String name, String defaultValue) {
+        String value = System.getProperty(name);
+        return StringUtils.hasText(value) ? value.trim() : defaultValue;
+    }
+
+    private static Duration duration(String name, String defaultValue) {
+        return DurationStyle.detectAndParse(property(name, defaultValue));
+    }
+}
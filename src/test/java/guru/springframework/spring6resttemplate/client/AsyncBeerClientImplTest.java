@@ -0,0 +1,68 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class AsyncBeerClientImplTest {
+
+    BeerClient beerClient;
+    AsyncBeerClientImpl asyncBeerClient;
+
+    @BeforeEach
+    void setUp() {
+        beerClient = mock(BeerClient.class);
+        asyncBeerClient = new AsyncBeerClientImpl(beerClient, "http://localhost:8080", 3);
+    }
+
+    @AfterEach
+    void tearDown() {
+        asyncBeerClient.destroy();
+    }
+
+    @Test
+    void testGetBeerById() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        when(beerClient.getBeerById(beerId)).thenReturn(BeerDTO.builder().id(beerId).build());
+
+        BeerDTO beerDTO = asyncBeerClient.getBeerById(beerId).get(5, TimeUnit.SECONDS);
+
+        assertThat(beerDTO.getId()).isEqualTo(beerId);
+        assertThat(asyncBeerClient.getTargetHost()).isEqualTo("localhost");
+    }
+
+    @Test
+    void testConcurrencyLimitPerHost() {
+        AtomicInteger inFlight = new AtomicInteger();
+        AtomicInteger maxInFlight = new AtomicInteger();
+
+        //Every call holds its permit for a moment, so we can see how many overlap
+        when(beerClient.getBeerById(any())).thenAnswer(invocation -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            Thread.sleep(20);
+            inFlight.decrementAndGet();
+            return BeerDTO.builder().id(invocation.getArgument(0)).build();
+        });
+
+        List<CompletableFuture<BeerDTO>> futures = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            futures.add(asyncBeerClient.getBeerById(UUID.randomUUID()));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).join();
+
+        assertThat(maxInFlight.get()).isLessThanOrEqualTo(3);
+    }
+}
@@ -0,0 +1,126 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BatchingBeerClientTest {
+
+    static final int MAX_BATCH_SIZE = 4;
+
+    BeerClient delegate;
+    SimpleMeterRegistry meterRegistry;
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(BeerClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+        //One thread per caller, the leader of a batch blocks until the others joined
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    //A long window, so a batch is only sent once it is full
+    BatchingBeerClient batchingClient(boolean fallbackToSingleGets) {
+        return new BatchingBeerClient(delegate, Duration.ofSeconds(30), MAX_BATCH_SIZE, fallbackToSingleGets, meterRegistry);
+    }
+
+    List<CompletableFuture<BeerDTO>> getConcurrently(BatchingBeerClient beerClient, List<UUID> ids) {
+        List<CompletableFuture<BeerDTO>> futures = new ArrayList<>();
+        for (UUID id : ids) {
+            futures.add(CompletableFuture.supplyAsync(() -> beerClient.getBeerById(id), executor));
+        }
+        return futures;
+    }
+
+    static List<UUID> ids(int count) {
+        List<UUID> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(UUID.randomUUID());
+        }
+        return ids;
+    }
+
+    @SuppressWarnings("unchecked")
+    static Map<UUID, BeerDTO> beersFor(Object ids) {
+        return ((Collection<UUID>) ids).stream()
+                .collect(Collectors.toMap(Function.identity(), id -> BeerDTO.builder().id(id).build()));
+    }
+
+    @Test
+    void testConcurrentCallsShareOneRequest() {
+        BatchingBeerClient beerClient = batchingClient(true);
+        List<UUID> ids = ids(MAX_BATCH_SIZE);
+        when(delegate.getBeersByIds(any())).thenAnswer(invocation -> beersFor(invocation.getArgument(0)));
+
+        List<CompletableFuture<BeerDTO>> futures = getConcurrently(beerClient, ids);
+
+        for (int i = 0; i < ids.size(); i++) {
+            assertThat(futures.get(i).join().getId()).isEqualTo(ids.get(i));
+        }
+        verify(delegate, times(1)).getBeersByIds(any());
+        verify(delegate, never()).getBeerById(any());
+        assertThat(meterRegistry.get(BatchingBeerClient.BATCH_FILL).summary().max()).isEqualTo(1.0);
+    }
+
+    @Test
+    void testMissingIdFallsBackToSingleGet() {
+        BatchingBeerClient beerClient = new BatchingBeerClient(delegate, Duration.ofMillis(2), MAX_BATCH_SIZE, true,
+                meterRegistry);
+        UUID unknown = UUID.randomUUID();
+        when(delegate.getBeersByIds(any())).thenReturn(Map.of());
+        when(delegate.getBeerById(unknown)).thenThrow(new HttpClientErrorException(HttpStatus.NOT_FOUND));
+
+        assertThrows(HttpClientErrorException.class, () -> beerClient.getBeerById(unknown));
+        assertThat(meterRegistry.get(BatchingBeerClient.FALLBACKS).tag("reason", "missing").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get(BatchingBeerClient.BATCH_SIZE).summary().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testFailedBatch() {
+        List<UUID> ids = ids(MAX_BATCH_SIZE);
+        when(delegate.getBeersByIds(any())).thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+        when(delegate.getBeerById(any())).thenAnswer(invocation -> BeerDTO.builder().id(invocation.getArgument(0)).build());
+
+        //With the fallback every caller gets its beer with a single GET
+        List<CompletableFuture<BeerDTO>> futures = getConcurrently(batchingClient(true), ids);
+        assertThat(futures).allSatisfy(future -> assertThat(future.join()).isNotNull());
+        verify(delegate, times(MAX_BATCH_SIZE)).getBeerById(any());
+
+        //Without it every caller sees the batch error
+        futures = getConcurrently(batchingClient(false), ids);
+        assertThat(futures).allSatisfy(future -> assertThat(future).failsWithin(Duration.ofSeconds(5)));
+        verify(delegate, times(MAX_BATCH_SIZE)).getBeerById(any());
+    }
+}
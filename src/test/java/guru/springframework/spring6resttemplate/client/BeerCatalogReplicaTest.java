@@ -0,0 +1,274 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.data.domain.Page;
+
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class BeerCatalogReplicaTest {
+
+    BeerClient delegate;
+    SimpleMeterRegistry meterRegistry;
+    MutableClock clock;
+    BeerCatalogReplica replica;
+
+    BeerDTO mango = beer(1, "Mango Bobs", BeerStyle.IPA, 1);
+    BeerDTO galaxy = beer(2, "Galaxy Cat", BeerStyle.PALE_ALE, 1);
+    BeerDTO crank = beer(3, "Crank", BeerStyle.IPA, 1);
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(BeerClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+        clock = new MutableClock();
+        replica = new BeerCatalogReplica(delegate, meterRegistry, Duration.ofMinutes(1), Duration.ofMinutes(5), 1000, clock);
+    }
+
+    void remoteCatalogue(BeerDTO... beers) {
+        when(delegate.streamBeers(isNull(), isNull(), eq(true), anyInt())).thenAnswer(invocation -> List.of(beers).stream());
+    }
+
+    @Test
+    void testServesReadsFromIndexes() {
+        remoteCatalogue(mango, galaxy, crank);
+        replica.sync();
+
+        assertThat(replica.getBeerById(galaxy.getId())).isEqualTo(galaxy).isNotSameAs(galaxy);
+
+        Page<BeerDTO> ipas = replica.listBeers(null, BeerStyle.IPA, false, 1, 25);
+        assertThat(ipas.getContent()).extracting(BeerDTO::getBeerName).containsExactly("Crank", "Mango Bobs");
+        assertThat(ipas.getContent()).extracting(BeerDTO::getQuantityOnHand).containsOnly(0);
+        assertThat(ipas.getTotalElements()).isEqualTo(2);
+
+        Page<BeerDTO> secondPage = replica.listBeers("a", null, true, 2, 2);
+        assertThat(secondPage.getContent()).extracting(BeerDTO::getBeerName).containsExactly("Mango Bobs");
+        assertThat(secondPage.getTotalElements()).isEqualTo(3);
+
+        assertThat(replica.findByNamePrefix("GAL")).extracting(BeerDTO::getId).containsExactly(galaxy.getId());
+
+        verify(delegate, never()).getBeerById(any());
+        verify(delegate, never()).listBeers(any(), any(), any(), any(), any());
+        assertThat(meterRegistry.get(BeerCatalogReplica.REQUESTS).tag("result", "hit").counters()).hasSize(3);
+    }
+
+    @Test
+    void testRefreshMergesChangesAndFallsBackWhenStale() {
+        remoteCatalogue(mango, galaxy);
+        replica.sync();
+
+        BeerDTO renamed = galaxy.toBuilder().beerName("Galaxy Dog").version(2).build();
+        BeerDTO outdated = mango.toBuilder().beerName("Old Mango").version(0).build();
+        remoteCatalogue(outdated, renamed, crank);
+        replica.sync();
+
+        assertThat(replica.listBeers().getContent()).extracting(BeerDTO::getBeerName)
+                .containsExactly("Crank", "Galaxy Dog", "Mango Bobs");
+        assertThat(meterRegistry.get(BeerCatalogReplica.CHANGES).tag("type", "updated").counter().count()).isEqualTo(1);
+
+        remoteCatalogue(crank);
+        replica.sync();
+        assertThat(replica.findByNamePrefix("galaxy")).isEmpty();
+
+        //Nothing synced for longer than maxStaleness, the remote client answers
+        clock.advance(Duration.ofMinutes(6));
+        when(delegate.getBeerById(crank.getId())).thenReturn(crank);
+        assertThat(replica.isFresh()).isFalse();
+        assertThat(replica.getBeerById(crank.getId())).isSameAs(crank);
+        verify(delegate).getBeerById(crank.getId());
+    }
+
+    @Test
+    void testMissAndWritesUpdateReplica() {
+        remoteCatalogue(mango);
+        replica.sync();
+
+        when(delegate.getBeerById(galaxy.getId())).thenReturn(galaxy);
+        assertThat(replica.getBeerById(galaxy.getId())).isSameAs(galaxy);
+        assertThat(replica.getBeerById(galaxy.getId())).isEqualTo(galaxy);
+        verify(delegate).getBeerById(galaxy.getId());
+
+        BeerDTO updated = mango.toBuilder().beerStyle(BeerStyle.STOUT).version(2).build();
+        when(delegate.updateBeer(any())).thenReturn(updated);
+        replica.updateBeer(updated);
+        assertThat(replica.listBeers(null, BeerStyle.STOUT, true, 1, 25).getContent()).containsExactly(updated);
+        assertThat(replica.listBeers(null, BeerStyle.IPA, true, 1, 25).getContent()).isEmpty();
+
+        replica.deleteBeer(galaxy.getId());
+        verify(delegate).deleteBeer(galaxy.getId());
+        assertThat(replica.listBeers().getContent()).containsExactly(updated);
+    }
+
+    @Test
+    void testWritesDuringSyncAreKept() {
+        remoteCatalogue(mango, galaxy);
+        replica.sync();
+
+        //Crank is created and Galaxy Cat deleted after the sync read its pages, which still have the old catalogue
+        when(delegate.createBeer(any())).thenReturn(crank);
+        when(delegate.streamBeers(isNull(), isNull(), eq(true), anyInt())).thenAnswer(invocation -> Stream.of(mango, galaxy)
+                .peek(beer -> {
+                    if (beer == galaxy) {
+                        replica.createBeer(crank);
+                        replica.deleteBeer(galaxy.getId());
+                    }
+                }));
+        replica.sync();
+
+        assertThat(replica.listBeers().getContent()).containsExactly(crank, mango);
+
+        //The next sync reads pages taken after the writes
+        remoteCatalogue(mango, crank);
+        replica.sync();
+        assertThat(replica.listBeers().getContent()).containsExactly(crank, mango);
+        verify(delegate, never()).getBeerById(any());
+    }
+
+    @Test
+    void testDeltaSyncReadsUpdatedBeersOnly() {
+        LocalDateTime firstUpdate = LocalDateTime.of(2022, 12, 1, 9, 0);
+        BeerDTO mango = this.mango.toBuilder().updateDate(firstUpdate).build();
+        BeerDTO galaxy = this.galaxy.toBuilder().updateDate(firstUpdate.plusMinutes(5)).build();
+        BeerCatalogReplica replica = new BeerCatalogReplica(delegate, meterRegistry, Duration.ofMinutes(1),
+                Duration.ofMinutes(5), 1000, null, Duration.ZERO, true, Duration.ofHours(1), clock);
+        remoteCatalogue(mango, galaxy);
+        replica.sync();
+
+        //Galaxy Cat is renamed and moved to another style, the delta starts from its updateDate less the overlap
+        BeerDTO renamed = galaxy.toBuilder().beerName("Galaxy Dog").beerStyle(BeerStyle.IPA).version(2)
+                .updateDate(firstUpdate.plusMinutes(30)).build();
+        when(delegate.streamBeersUpdatedSince(eq(galaxy.getUpdateDate().minus(BeerCatalogReplica.DELTA_OVERLAP)), anyInt()))
+                .thenAnswer(invocation -> Stream.of(renamed));
+        clock.advance(Duration.ofMinutes(1));
+        replica.sync();
+
+        assertThat(replica.findByNamePrefix("galaxy")).containsExactly(renamed);
+        assertThat(replica.listBeers(null, BeerStyle.IPA, true, 1, 25).getContent()).containsExactly(renamed, mango);
+        assertThat(replica.listBeers(null, BeerStyle.PALE_ALE, true, 1, 25).getTotalElements()).isZero();
+
+        //A delta doesn't show that Mango Bobs is gone, the full sync due after fullSyncInterval does
+        when(delegate.streamBeersUpdatedSince(eq(renamed.getUpdateDate().minus(BeerCatalogReplica.DELTA_OVERLAP)), anyInt()))
+                .thenAnswer(invocation -> Stream.empty());
+        replica.sync();
+        assertThat(replica.listBeers().getContent()).containsExactly(renamed, mango);
+
+        remoteCatalogue(renamed);
+        clock.advance(Duration.ofHours(1));
+        replica.sync();
+        assertThat(replica.listBeers().getContent()).containsExactly(renamed);
+        assertThat(replica.listBeers(null, BeerStyle.IPA, true, 1, 25).getTotalElements()).isEqualTo(1);
+        verify(delegate, times(2)).streamBeers(isNull(), isNull(), eq(true), anyInt());
+    }
+
+    @Test
+    void testRestoresSnapshotBeforeFirstSync(@TempDir Path directory) {
+        Path snapshot = directory.resolve("beers.snapshot");
+        remoteCatalogue(mango, galaxy);
+        BeerCatalogReplica previousRun = new BeerCatalogReplica(delegate, meterRegistry, Duration.ofMinutes(1),
+                Duration.ofMinutes(5), 1000, snapshot, Duration.ofHours(1), clock);
+        previousRun.sync();
+        assertThat(snapshot).exists();
+
+        //Restarted 30 minutes later with the service unreachable, the snapshot is served
+        clock.advance(Duration.ofMinutes(30));
+        BeerClient unreachable = mock(BeerClient.class);
+        BeerCatalogReplica restarted = new BeerCatalogReplica(unreachable, meterRegistry, Duration.ofMinutes(1),
+                Duration.ofMinutes(5), 1000, snapshot, Duration.ofHours(1), clock);
+        restarted.restoreSnapshot();
+
+        assertThat(restarted.isFresh()).isTrue();
+        assertThat(restarted.staleness()).isEqualTo(Duration.ofMinutes(30));
+        assertThat(restarted.getBeerById(mango.getId())).isEqualTo(mango);
+        assertThat(restarted.listBeers(null, BeerStyle.PALE_ALE, true, 1, 25).getContent()).containsExactly(galaxy);
+        verify(unreachable, never()).getBeerById(any());
+
+        //Once the first sync succeeded, maxStaleness applies again
+        when(unreachable.streamBeers(isNull(), isNull(), eq(true), anyInt())).thenAnswer(invocation -> Stream.of(mango));
+        restarted.sync();
+        clock.advance(Duration.ofMinutes(6));
+        assertThat(restarted.isFresh()).isFalse();
+    }
+
+    @Test
+    void testSnapshotHoldsWritesAfterSync(@TempDir Path directory) {
+        Path snapshot = directory.resolve("beers.snapshot");
+        remoteCatalogue(mango, galaxy);
+        BeerCatalogReplica previousRun = new BeerCatalogReplica(delegate, meterRegistry, Duration.ofMinutes(1),
+                Duration.ofMinutes(5), 1000, snapshot, Duration.ofHours(1), clock);
+        previousRun.sync();
+
+        when(delegate.createBeer(any())).thenReturn(crank);
+        previousRun.createBeer(crank);
+        previousRun.deleteBeer(galaxy.getId());
+
+        //The service agrees with the replica by now, so this sync finds nothing to change
+        remoteCatalogue(mango, crank);
+        previousRun.sync();
+
+        BeerCatalogReplica restarted = new BeerCatalogReplica(mock(BeerClient.class), meterRegistry,
+                Duration.ofMinutes(1), Duration.ofMinutes(5), 1000, snapshot, Duration.ofHours(1), clock);
+        restarted.restoreSnapshot();
+        assertThat(restarted.listBeers().getContent()).containsExactly(crank, mango);
+    }
+
+    static BeerDTO beer(long index, String name, BeerStyle style, int version) {
+        return BeerDTO.builder()
+                .id(new UUID(0, index))
+                .version(version)
+                .beerName(name)
+                .beerStyle(style)
+                .upc("12356" + index)
+                .quantityOnHand(100)
+                .price(new BigDecimal("10.99"))
+                .build();
+    }
+
+    static class MutableClock extends Clock {
+
+        Instant now = Instant.parse("2022-12-01T10:00:00Z");
+
+        void advance(Duration duration) {
+            now = now.plus(duration);
+        }
+
+        @Override
+        public ZoneId getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+    }
+}
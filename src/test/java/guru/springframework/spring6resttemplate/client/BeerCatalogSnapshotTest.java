@@ -0,0 +1,72 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class BeerCatalogSnapshotTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void testWriteAndRead() throws IOException {
+        BeerDTO full = BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(3)
+                .beerName("Mango Bobs – Ünïcode")
+                .beerStyle(BeerStyle.IPA)
+                .upc("0123456")
+                .quantityOnHand(500)
+                .price(new BigDecimal("12.990"))
+                .createdDate(LocalDateTime.of(2022, 11, 30, 8, 15, 1, 123456789))
+                .updateDate(LocalDateTime.of(2022, 12, 1, 9, 0))
+                .build();
+        BeerDTO sparse = BeerDTO.builder().id(UUID.randomUUID()).beerName("Galaxy Cat")
+                .updateDate(LocalDateTime.of(2022, 12, 2, 9, 0)).build();
+        Instant syncedAt = Instant.parse("2022-12-03T10:15:30.123Z");
+
+        Path path = directory.resolve("beers.snapshot");
+        BeerCatalogSnapshot.write(path, List.of(full, sparse), syncedAt);
+        BeerCatalogSnapshot.Contents contents = BeerCatalogSnapshot.read(path);
+
+        assertThat(contents.beers()).containsExactly(full, sparse);
+        assertThat(contents.syncedAt()).isEqualTo(syncedAt);
+        assertThat(contents.maxUpdateDate()).isEqualTo(sparse.getUpdateDate());
+        assertThat(directory.resolve("beers.snapshot.tmp")).doesNotExist();
+
+        Instant later = syncedAt.plusSeconds(60);
+        assertThat(BeerCatalogSnapshot.touch(path, later)).isTrue();
+        assertThat(BeerCatalogSnapshot.read(path).syncedAt()).isEqualTo(later);
+        assertThat(BeerCatalogSnapshot.read(path).beers()).containsExactly(full, sparse);
+    }
+
+    @Test
+    void testRejectsTruncatedSnapshot() throws IOException {
+        Path path = directory.resolve("beers.snapshot");
+        BeerCatalogSnapshot.write(path, List.of(BeerDTO.builder().id(UUID.randomUUID()).beerName("Crank").build()),
+                Instant.now());
+
+        byte[] bytes = Files.readAllBytes(path);
+        Files.write(path, Arrays.copyOf(bytes, bytes.length - 10));
+        assertThrows(IOException.class, () -> BeerCatalogSnapshot.read(path));
+
+        Files.writeString(path, "not a snapshot at all, but long enough for a header");
+        assertThrows(IOException.class, () -> BeerCatalogSnapshot.read(path));
+        assertThat(BeerCatalogSnapshot.touch(path, Instant.now())).isFalse();
+    }
+}
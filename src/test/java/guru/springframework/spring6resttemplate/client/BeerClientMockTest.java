@@ -3,10 +3,14 @@ package guru.springframework.spring6resttemplate.client;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import guru.springframework.spring6resttemplate.config.OAuthClientInterceptor;
+import guru.springframework.spring6resttemplate.config.ResilienceInterceptor;
 import guru.springframework.spring6resttemplate.config.RestTemplateBuilderConfig;
+import guru.springframework.spring6resttemplate.model.BeerBatchPage;
 import guru.springframework.spring6resttemplate.model.BeerDTO;
 import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
 import guru.springframework.spring6resttemplate.model.BeerStyle;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.Mock;
@@ -43,7 +47,10 @@ import java.net.URI;
 import java.net.http.HttpResponse;
 import java.text.MessageFormat;
 import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -71,6 +78,8 @@ public class BeerClientMockTest {
 
     MockRestServiceServer server;
 
+    RestTemplate restTemplate;
+
     @Autowired
     RestTemplateBuilder restTemplateBuilderConfigured;
 
@@ -108,9 +117,16 @@ public class BeerClientMockTest {
             return new InMemoryOAuth2AuthorizedClientService(clientRegistrationRepository);
         }
 
+        //Picked up by the metrics interceptor instead of the global registry
+        @Bean
+        SimpleMeterRegistry meterRegistry() {
+            return new SimpleMeterRegistry();
+        }
+
         @Bean
-        OAuthClientInterceptor oAuthClientInterceptor(OAuth2AuthorizedClientManager manager, ClientRegistrationRepository clientRegistrationRepository){
-            return new OAuthClientInterceptor(manager, clientRegistrationRepository);
+        OAuthClientInterceptor oAuthClientInterceptor(OAuth2AuthorizedClientManager manager, ClientRegistrationRepository clientRegistrationRepository,
+                                                      OAuth2AuthorizedClientService authorizedClientService, SimpleMeterRegistry meterRegistry){
+            return new OAuthClientInterceptor(manager, clientRegistrationRepository, authorizedClientService, meterRegistry);
         }
     }
 
@@ -118,6 +134,12 @@ public class BeerClientMockTest {
     @Autowired
     ClientRegistrationRepository clientRegistrationRepository;
 
+    @Autowired
+    SimpleMeterRegistry meterRegistry;
+
+    @Autowired
+    ResilienceInterceptor resilienceInterceptor;
+
     @BeforeEach
     void setUp() throws JsonProcessingException {
         ClientRegistration clientRegistration = clientRegistrationRepository
@@ -131,7 +153,7 @@ public class BeerClientMockTest {
         when(manager.authorize(any())).thenReturn(new OAuth2AuthorizedClient(clientRegistration,
                 "test", token));
 
-        RestTemplate restTemplate = restTemplateBuilderConfigured.build();
+        restTemplate = restTemplateBuilderConfigured.build();
         server = MockRestServiceServer.bindTo(restTemplate).build();
         when(mockRestTemplateBuilder.build()).thenReturn(restTemplate);
         beerClient = new BeerClientImpl(mockRestTemplateBuilder);
@@ -174,6 +196,44 @@ public class BeerClientMockTest {
 
     }
 
+    @Test
+    void testListBeersStreamingContent() throws JsonProcessingException {
+
+        String payload = objectMapper.writeValueAsString(getPage());
+
+        server.expect(method(HttpMethod.GET))
+                .andExpect(header(authHeader, BEARER_TEST))
+                .andExpect(requestTo(URL + BeerClientImpl.GET_BEER_PATH))
+                .andRespond(withSuccess(payload, MediaType.APPLICATION_JSON));
+
+        //Every beer is handed to the consumer while the response is parsed
+        List<BeerDTO> beers = new ArrayList<>();
+        Page<BeerDTO> page = beerClient.listBeers(null, null, null, null, null, beers::add);
+
+        assertThat(beers).hasSize(1);
+        assertThat(beers.get(0).getBeerName()).isEqualTo("Mango Bobs");
+        assertThat(page.getContent()).isEmpty();
+        assertThat(page.getTotalElements()).isEqualTo(getPage().getTotalElements());
+    }
+
+    @Test
+    void testListBeersCompact() throws JsonProcessingException {
+
+        String payload = objectMapper.writeValueAsString(getPage());
+
+        server.expect(method(HttpMethod.GET))
+                .andExpect(header(authHeader, BEARER_TEST))
+                .andExpect(requestTo(URL + BeerClientImpl.GET_BEER_PATH))
+                .andRespond(withSuccess(payload, MediaType.APPLICATION_JSON));
+
+        BeerBatchPage page = beerClient.listBeersCompact(null, null, null, null, null);
+
+        assertThat(page.getBatch()).hasSize(1);
+        assertThat(page.getContent().get(0).getBeerName()).isEqualTo("Mango Bobs");
+        assertThat(page.getContent().get(0).getPrice()).isEqualByComparingTo(dto.getPrice());
+        assertThat(page.getTotalElements()).isEqualTo(getPage().getTotalElements());
+    }
+
     @Test
     void testListBeersByName() throws JsonProcessingException {
 
@@ -206,6 +266,83 @@ public class BeerClientMockTest {
         BeerDTO responseDto = beerClient.getBeerById(dto.getId());
         assertThat(responseDto.getId()).isEqualTo(dto.getId());
     }
+    @Test
+    void testGetBeersByIdsWithIdsParam() throws JsonProcessingException {
+
+        ((BeerClientImpl) beerClient).setIdsQueryParam("beerIds");
+        UUID unknown = UUID.randomUUID();
+        String payload = objectMapper.writeValueAsString(new BeerDTOPageImpl(List.of(dto), 0, 2, 1));
+
+        //One list request for all ids, the unknown one is simply not in the page
+        server.expect(method(HttpMethod.GET))
+                .andExpect(header(authHeader, BEARER_TEST))
+                .andExpect(requestTo(URL + BeerClientImpl.GET_BEER_PATH + "?beerIds=" + dto.getId() + "," + unknown
+                        + "&showInventory=true&pageSize=2"))
+                .andRespond(withSuccess(payload, MediaType.APPLICATION_JSON));
+
+        Map<UUID, BeerDTO> beers = beerClient.getBeersByIds(List.of(dto.getId(), unknown));
+
+        assertThat(beers).containsOnlyKeys(dto.getId());
+        server.verify();
+    }
+
+    @Test
+    void testGetBeersByIdsFallsBackToSingleGets() {
+
+        UUID unknown = UUID.randomUUID();
+        server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+        mockGetOperation();
+        server.expect(method(HttpMethod.GET))
+                .andExpect(requestToUriTemplate(URL + BeerClientImpl.GET_BEER_BY_ID_PATH, unknown))
+                .andRespond(withResourceNotFound());
+
+        Map<UUID, BeerDTO> beers = beerClient.getBeersByIds(List.of(dto.getId(), unknown));
+
+        assertThat(beers).containsOnlyKeys(dto.getId());
+        server.verify();
+    }
+
+    @Test
+    void testGetBeerByIdRetriesOnceWhenTokenRejected() {
+
+        //First attempt is rejected, the interceptor drops its cached token and retries with a fresh one
+        server.expect(method(HttpMethod.GET))
+                .andExpect(header(authHeader, BEARER_TEST))
+                .andExpect(requestToUriTemplate(URL +
+                        BeerClientImpl.GET_BEER_BY_ID_PATH, dto.getId()))
+                .andRespond(withUnauthorizedRequest());
+
+        mockGetOperation();
+
+        BeerDTO responseDto = beerClient.getBeerById(dto.getId());
+        assertThat(responseDto.getId()).isEqualTo(dto.getId());
+
+        server.verify();
+    }
+
+    @Test
+    void testTokenRetryRunsEveryInterceptor() {
+
+        //The context is shared by all tests, so we only look at what this call adds
+        CircuitBreaker circuitBreaker = resilienceInterceptor.getCircuitBreakerRegistry()
+                .circuitBreaker("GET " + BeerClientImpl.GET_BEER_BY_ID_PATH);
+        int callsBefore = circuitBreaker.getMetrics().getNumberOfSuccessfulCalls();
+        meterRegistry.clear();
+
+        server.expect(method(HttpMethod.GET))
+                .andExpect(requestToUriTemplate(URL + BeerClientImpl.GET_BEER_BY_ID_PATH, dto.getId()))
+                .andRespond(withUnauthorizedRequest());
+        mockGetOperation();
+
+        beerClient.getBeerById(dto.getId());
+
+        //The rejected request and its retry are both timed and both went through the breaker
+        assertThat(meterRegistry.get("beer.client.requests").tag("status", "401").timer().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("beer.client.requests").tag("status", "200").timer().count()).isEqualTo(1);
+        assertThat(circuitBreaker.getMetrics().getNumberOfSuccessfulCalls()).isEqualTo(callsBefore + 2);
+        server.verify();
+    }
+
     //Using Intellij refactor feature to Extract the mocked GET operation
     private void mockGetOperation() {
         server.expect(method(HttpMethod.GET))
@@ -238,6 +375,39 @@ public class BeerClientMockTest {
     }
 
 
+    @Test
+    void testCreateBeerReadsResponseBody() {
+
+        URI uri = UriComponentsBuilder.fromPath(BeerClientImpl.GET_BEER_BY_ID_PATH).build(dto.getId());
+
+        //The server sends the created beer back, so no follow up GET is expected
+        server.expect(method(HttpMethod.POST))
+                .andExpect(header(authHeader, BEARER_TEST))
+                .andExpect(requestTo(URL + BeerClientImpl.GET_BEER_PATH))
+                .andRespond(withCreatedEntity(uri).body(dtoJson).contentType(MediaType.APPLICATION_JSON));
+
+        BeerDTO newDto = beerClient.createBeer(dto);
+        assertThat(newDto.getId()).isEqualTo(dto.getId());
+
+        server.verify();
+    }
+
+    @Test
+    void testUpdateBeerFollowUpGet() {
+
+        //With FOLLOW_UP_GET the beer is read again even though the PUT response has a body
+        server.expect(method(HttpMethod.PUT))
+                .andExpect(requestToUriTemplate(URL + BeerClientImpl.GET_BEER_BY_ID_PATH, dto.getId()))
+                .andRespond(withSuccess(dtoJson, MediaType.APPLICATION_JSON));
+
+        mockGetOperation();
+
+        BeerDTO responseDto = beerClient.updateBeer(dto, WriteResponseMode.FOLLOW_UP_GET);
+        assertThat(responseDto.getId()).isEqualTo(dto.getId());
+
+        server.verify();
+    }
+
     @Test
     void testUpdateBeer() {
 
@@ -268,6 +438,30 @@ public class BeerClientMockTest {
         server.verify();
     }
 
+    @Test
+    void testDeleteBeersReportsPerItem() {
+
+        //Bulk requests run concurrently, so the expectations may be met in any order
+        server = MockRestServiceServer.bindTo(restTemplate).ignoreExpectOrder(true).build();
+
+        List<UUID> ids = List.of(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID());
+        for (UUID id : ids) {
+            server.expect(method(HttpMethod.DELETE))
+                    .andExpect(requestToUriTemplate(URL + BeerClientImpl.GET_BEER_BY_ID_PATH, id))
+                    .andRespond(id.equals(ids.get(1)) ? withResourceNotFound() : withNoContent());
+        }
+
+        List<BulkResult<UUID>> results = beerClient.deleteBeers(ids);
+
+        //Results are in input order and the failure of the second item doesn't affect the others
+        assertThat(results).extracting(BulkResult::index).containsExactly(0, 1, 2);
+        assertThat(results).extracting(BulkResult::isSuccess).containsExactly(true, false, true);
+        assertThat(results.get(1).error()).isInstanceOf(HttpClientErrorException.class);
+        assertThat(results.get(2).value()).isEqualTo(ids.get(2));
+
+        server.verify();
+    }
+
     @Test
     void testDeleteBeer() {
 
@@ -0,0 +1,76 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Page;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerPageIteratorTest {
+
+    static final int PAGE_SIZE = 2;
+    static final int TOTAL = 5;
+
+    ExecutorService executor = Executors.newCachedThreadPool();
+
+    Set<Integer> fetchedPages = ConcurrentHashMap.newKeySet();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    //Serves a catalogue of TOTAL beers named 0..TOTAL-1, pages are 1-based like the beer service
+    Page<BeerDTO> fetch(int pageNumber) {
+        fetchedPages.add(pageNumber);
+        List<BeerDTO> content = IntStream.range((pageNumber - 1) * PAGE_SIZE, Math.min(pageNumber * PAGE_SIZE, TOTAL))
+                .mapToObj(i -> BeerDTO.builder().beerName(String.valueOf(i)).build())
+                .toList();
+        return new BeerDTOPageImpl(content, pageNumber - 1, PAGE_SIZE, TOTAL);
+    }
+
+    @Test
+    void testReadsAllPagesInOrder() {
+        BeerPageIterator iterator = new BeerPageIterator(this::fetch, 2, executor);
+
+        List<String> names = new ArrayList<>();
+        iterator.forEachRemaining(beer -> names.add(beer.getBeerName()));
+
+        assertThat(names).containsExactly("0", "1", "2", "3", "4");
+        assertThat(fetchedPages).containsExactlyInAnyOrder(1, 2, 3);
+    }
+
+    @Test
+    void testReadAheadIsBoundedByWindow() {
+        BeerPageIterator iterator = new BeerPageIterator(this::fetch, 1, executor);
+
+        iterator.next();
+
+        //Only the current page and one page ahead have been requested
+        assertThat(fetchedPages).doesNotContain(3);
+        iterator.close();
+        assertThat(iterator.hasNext()).isFalse();
+    }
+
+    @Test
+    void testWithoutReadAhead() {
+        BeerPageIterator iterator = new BeerPageIterator(this::fetch, 0, executor);
+
+        iterator.next();
+        iterator.next();
+        assertThat(fetchedPages).containsExactly(1);
+
+        iterator.forEachRemaining(beer -> { });
+        assertThat(fetchedPages).containsExactlyInAnyOrder(1, 2, 3);
+    }
+}
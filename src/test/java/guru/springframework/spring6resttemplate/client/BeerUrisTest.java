@@ -0,0 +1,58 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerUrisTest {
+
+    static final String ROOT = "http://localhost:8080";
+
+    BeerUris uris = new BeerUris(ROOT);
+
+    //What listBeers sent before, toUriString() encoded the query the same way
+    static URI expected(String beerName, BeerStyle beerStyle, Boolean showInventory, Integer pageNumber, Integer pageSize) {
+        return UriComponentsBuilder.fromHttpUrl(ROOT + BeerClientImpl.GET_BEER_PATH)
+                .queryParamIfPresent("beerName", Optional.ofNullable(beerName))
+                .queryParamIfPresent("beerStyle", Optional.ofNullable(beerStyle))
+                .queryParamIfPresent("pageNumber", Optional.ofNullable(pageNumber))
+                .queryParamIfPresent("pageSize", Optional.ofNullable(pageSize))
+                .queryParamIfPresent("showInventory", Optional.ofNullable(showInventory))
+                .build().encode().toUri();
+    }
+
+    @Test
+    void testListBeersUriMatchesUriComponentsBuilder() {
+        for (String beerName : List.of("ALE", "Mango Bobs", "A+B&C=D", "Ünïcode", "50%", "a/b?c#d")) {
+            for (BeerStyle beerStyle : BeerStyle.values()) {
+                assertThat(uris.beers(beerName, beerStyle, true, 2, 25)).isEqualTo(expected(beerName, beerStyle, true, 2, 25));
+            }
+        }
+        assertThat(uris.beers(null, null, false, null, 1000)).isEqualTo(expected(null, null, false, null, 1000));
+        assertThat(uris.beers(null, null, null, null, null)).isSameAs(uris.beers());
+        assertThat(uris.beers().toString()).isEqualTo(ROOT + BeerClientImpl.GET_BEER_PATH);
+    }
+
+    @Test
+    void testBeerUris() {
+        UUID beerId = UUID.randomUUID();
+        assertThat(uris.beer(beerId).toString()).isEqualTo(ROOT + "/api/v1/beer/" + beerId);
+        assertThat(uris.path("/api/v1/beer/" + beerId)).isEqualTo(uris.beer(beerId));
+
+        UUID otherId = UUID.randomUUID();
+        assertThat(uris.beersByIds("beerIds", List.of(beerId, otherId)).toString()).isEqualTo(ROOT
+                + "/api/v1/beer?beerIds=" + beerId + "," + otherId + "&showInventory=true&pageSize=2");
+
+        LocalDateTime since = LocalDateTime.of(2024, 1, 2, 12, 30, 15);
+        assertThat(uris.beersUpdatedSince("updatedSince", since, 2, 1000).toString()).isEqualTo(ROOT
+                + "/api/v1/beer?updatedSince=2024-01-02T12:30:15&pageNumber=2&pageSize=1000&showInventory=true");
+    }
+}
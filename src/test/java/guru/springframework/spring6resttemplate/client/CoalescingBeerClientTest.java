@@ -0,0 +1,86 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CoalescingBeerClientTest {
+
+    static final int CALLERS = 8;
+
+    BeerClient delegate;
+    CoalescingBeerClient beerClient;
+    CountDownLatch release;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(BeerClient.class);
+        beerClient = new CoalescingBeerClient(delegate);
+        release = new CountDownLatch(1);
+    }
+
+    //Starts CALLERS concurrent getBeerById calls and lets the upstream answer once all but the leader joined
+    List<CompletableFuture<BeerDTO>> callConcurrently(UUID beerId) throws InterruptedException {
+        List<CompletableFuture<BeerDTO>> futures = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            futures.add(CompletableFuture.supplyAsync(() -> beerClient.getBeerById(beerId)));
+        }
+        while (beerClient.getCollapsedCalls() < CALLERS - 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        return futures;
+    }
+
+    @Test
+    void testConcurrentCallsShareOneRequest() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        BeerDTO beer = BeerDTO.builder().id(beerId).build();
+        when(delegate.getBeerById(beerId)).thenAnswer(invocation -> {
+            release.await();
+            return beer;
+        });
+
+        for (CompletableFuture<BeerDTO> future : callConcurrently(beerId)) {
+            assertThat(future.get()).isSameAs(beer);
+        }
+
+        verify(delegate, times(1)).getBeerById(beerId);
+        assertThat(beerClient.getUpstreamCalls()).isEqualTo(1);
+        assertThat(beerClient.getCollapsedCalls()).isEqualTo(CALLERS - 1);
+    }
+
+    @Test
+    void testConcurrentCallsShareException() throws Exception {
+        UUID beerId = UUID.randomUUID();
+        when(delegate.getBeerById(beerId)).thenAnswer(invocation -> {
+            release.await();
+            throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+        });
+
+        for (CompletableFuture<BeerDTO> future : callConcurrently(beerId)) {
+            Throwable failure = future.handle((result, e) -> e).get();
+            assertThat(failure).hasCauseInstanceOf(HttpClientErrorException.class);
+        }
+        verify(delegate, times(1)).getBeerById(beerId);
+
+        //Once the flight is over the next call goes upstream again
+        assertThrows(HttpClientErrorException.class, () -> beerClient.getBeerById(beerId));
+        assertThat(beerClient.getUpstreamCalls()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,158 @@
+package guru.springframework.spring6resttemplate.client;
+
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpServerErrorException;
+
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class HedgingBeerClientTest {
+
+    static final Duration DELAY = Duration.ofMillis(50);
+
+    BeerClient delegate;
+    SimpleMeterRegistry meterRegistry;
+    HedgingBeerClient beerClient;
+
+    @BeforeEach
+    void setUp() {
+        delegate = mock(BeerClient.class);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @AfterEach
+    void tearDown() {
+        beerClient.destroy();
+    }
+
+    //minDelay = maxDelay, so the delay doesn't move with the latencies
+    HedgingBeerClient hedgingClient(double budgetRatio) {
+        return new HedgingBeerClient(delegate, meterRegistry, 95, DELAY, DELAY, budgetRatio, 16);
+    }
+
+    double hedges(String outcome) {
+        Counter counter = meterRegistry.find(HedgingBeerClient.HEDGES).tag("outcome", outcome).counter();
+        return counter != null ? counter.count() : 0;
+    }
+
+    @Test
+    void testSlowPrimaryIsHedgedAndCancelled() throws Exception {
+        beerClient = hedgingClient(0.05);
+        BeerDTO beer = BeerDTO.builder().id(UUID.randomUUID()).build();
+        AtomicInteger calls = new AtomicInteger();
+        AtomicBoolean aborted = new AtomicBoolean();
+        CountDownLatch interrupted = new CountDownLatch(1);
+
+        //The first call hangs like a slow replica, the hedge answers right away
+        when(delegate.getBeerById(any())).thenAnswer(invocation -> {
+            if (calls.incrementAndGet() == 1) {
+                RequestCancellation.onCancel(() -> aborted.set(true));
+                try {
+                    Thread.sleep(10_000);
+                } catch (InterruptedException e) {
+                    interrupted.countDown();
+                    throw new IllegalStateException("cancelled");
+                }
+            }
+            return beer;
+        });
+
+        long start = System.nanoTime();
+        assertThat(beerClient.getBeerById(beer.getId())).isSameAs(beer);
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(interrupted.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(aborted).isTrue();
+        verify(delegate, times(2)).getBeerById(beer.getId());
+        assertThat(hedges("hedgeWon")).isEqualTo(1.0);
+    }
+
+    @Test
+    void testFastCallIsNotHedged() {
+        beerClient = hedgingClient(0.05);
+        when(delegate.getBeerById(any())).thenReturn(BeerDTO.builder().build());
+
+        for (int i = 0; i < 10; i++) {
+            beerClient.getBeerById(UUID.randomUUID());
+        }
+
+        verify(delegate, times(10)).getBeerById(any());
+        assertThat(meterRegistry.find(HedgingBeerClient.HEDGES).counters()).isEmpty();
+    }
+
+    @Test
+    void testFailureBeforeDelayIsNotHedged() {
+        beerClient = hedgingClient(0.05);
+        when(delegate.getBeerById(any())).thenThrow(new HttpServerErrorException(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThrows(HttpServerErrorException.class, () -> beerClient.getBeerById(UUID.randomUUID()));
+
+        verify(delegate, times(1)).getBeerById(any());
+    }
+
+    @Test
+    void testBudgetLimitsHedges() {
+        beerClient = hedgingClient(0.0);
+        //Slow enough to be hedged every time, the hedge is just as slow
+        when(delegate.getBeerById(any())).thenAnswer(invocation -> {
+            Thread.sleep(DELAY.toMillis() * 2);
+            return BeerDTO.builder().build();
+        });
+
+        for (int i = 0; i < HedgingBeerClient.MAX_SAVED_HEDGES + 3; i++) {
+            beerClient.getBeerById(UUID.randomUUID());
+        }
+
+        //Nothing is saved with a zero ratio, only the hedges the budget starts with are sent
+        assertThat(hedges("primaryWon") + hedges("hedgeWon")).isEqualTo(HedgingBeerClient.MAX_SAVED_HEDGES);
+        assertThat(hedges("overBudget")).isEqualTo(3.0);
+    }
+
+    @Test
+    void testHedgeNotSentWithoutThread() {
+        //The primary takes the only thread
+        beerClient = new HedgingBeerClient(delegate, meterRegistry, 95, DELAY, DELAY, 0.05, 1);
+        BeerDTO beer = BeerDTO.builder().build();
+        when(delegate.getBeerById(any())).thenAnswer(invocation -> {
+            Thread.sleep(DELAY.toMillis() * 2);
+            return beer;
+        });
+
+        assertThat(beerClient.getBeerById(UUID.randomUUID())).isSameAs(beer);
+
+        verify(delegate, times(1)).getBeerById(any());
+        assertThat(hedges("saturated")).isEqualTo(1.0);
+    }
+
+    @Test
+    void testDelayFollowsLatencies() {
+        beerClient = new HedgingBeerClient(delegate, meterRegistry, 95, DELAY, Duration.ofSeconds(1), 0.05, 16);
+        when(delegate.getBeerById(any())).thenReturn(BeerDTO.builder().build());
+
+        assertThat(beerClient.getBeerByIdDelay()).isEqualTo(Duration.ofSeconds(1));
+        for (int i = 0; i < HedgingBeerClient.MIN_SAMPLES; i++) {
+            beerClient.getBeerById(UUID.randomUUID());
+        }
+
+        //Mocked calls take far less than the minimum, even the first, cold ones
+        assertThat(beerClient.getBeerByIdDelay()).isEqualTo(DELAY);
+    }
+}
@@ -0,0 +1,71 @@
+package guru.springframework.spring6resttemplate.client;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import guru.springframework.spring6resttemplate.stub.BeerStubServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReactiveBeerClientImplTest {
+
+    BeerStubServer stubServer;
+    ReactiveBeerClient beerClient;
+
+    @BeforeEach
+    void setUp() {
+        stubServer = new BeerStubServer(95).start();
+
+        //Boot's ObjectMapper defaults, BeerDTO is bound through its all-args constructor
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+                .build();
+        beerClient = new ReactiveBeerClientImpl(WebClient.builder()
+                .baseUrl(stubServer.getRootUrl())
+                .codecs(codecs -> codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper)))
+                .build());
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubServer.close();
+    }
+
+    @Test
+    void testListAllBeersReadsEveryPage() {
+        StepVerifier.create(beerClient.listAllBeers(null, null, null, 10))
+                .expectNextCount(95)
+                .verifyComplete();
+
+        assertThat(stubServer.getPageRequests()).isEqualTo(10);
+    }
+
+    @Test
+    void testListAllBeersFollowsDemand() {
+        //Fifteen beers need two pages, nothing further is fetched while the subscriber asks for nothing more
+        StepVerifier.create(beerClient.listAllBeers(null, null, null, 10), 0)
+                .thenRequest(15)
+                .expectNextCount(15)
+                .expectNoEvent(Duration.ofMillis(200))
+                .thenCancel()
+                .verify();
+
+        assertThat(stubServer.getPageRequests()).isEqualTo(2);
+    }
+
+    @Test
+    void testGetBeerById() {
+        StepVerifier.create(beerClient.getBeerById(stubServer.beer(0).getId()))
+                .assertNext(beer -> assertThat(beer.getBeerName()).isEqualTo(stubServer.beer(0).getBeerName()))
+                .verifyComplete();
+    }
+}
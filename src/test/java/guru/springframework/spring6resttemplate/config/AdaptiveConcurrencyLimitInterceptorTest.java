@@ -0,0 +1,171 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.client.ClientHttpRequestExecution;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+
+import java.io.IOException;
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AdaptiveConcurrencyLimitInterceptorTest {
+
+    static final String HOST = "localhost:8080";
+
+    MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.GET, URI.create("http://" + HOST + "/api/v1/beer"));
+    SimpleMeterRegistry meterRegistry;
+    ExecutorService executor;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    AdaptiveConcurrencyLimitInterceptor limiter(int initialLimit, Duration maxWait) {
+        //A huge tolerance, so round trips of the test threads never count as slow
+        return new AdaptiveConcurrencyLimitInterceptor(meterRegistry, initialLimit, 1, 50, 0.5, 1000.0, maxWait, 10);
+    }
+
+    static ClientHttpRequestExecution respondWith(HttpStatus status) {
+        return (request, body) -> new MockClientHttpResponse(new byte[0], status);
+    }
+
+    //The permit comes back once the response is closed, as RestTemplate does after reading the body
+    void call(AdaptiveConcurrencyLimitInterceptor limiter, HttpStatus status) throws IOException {
+        limiter.intercept(request, new byte[0], respondWith(status)).close();
+    }
+
+    @Test
+    void testLimitShrinksOnOverloadAndGrowsBack() throws Exception {
+        AdaptiveConcurrencyLimitInterceptor limiter = limiter(8, Duration.ZERO);
+
+        call(limiter, HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(limiter.getLimit(HOST)).isEqualTo(4);
+        call(limiter, HttpStatus.TOO_MANY_REQUESTS);
+        assertThat(limiter.getLimit(HOST)).isEqualTo(2);
+        call(limiter, HttpStatus.SERVICE_UNAVAILABLE);
+        call(limiter, HttpStatus.SERVICE_UNAVAILABLE);
+        assertThat(limiter.getLimit(HOST)).isEqualTo(1);
+        assertThat(meterRegistry.get(AdaptiveConcurrencyLimitInterceptor.LIMIT).tag("host", HOST).gauge().value())
+                .isEqualTo(1);
+
+        //Successes grow the limit again, but only while one request at a time still uses half of it
+        for (int i = 0; i < 10; i++) {
+            call(limiter, HttpStatus.OK);
+        }
+        assertThat(limiter.getLimit(HOST)).isEqualTo(2);
+    }
+
+    @Test
+    void testRequestOverLimitRejectedAfterMaxWait() throws Exception {
+        AdaptiveConcurrencyLimitInterceptor limiter = limiter(1, Duration.ofMillis(50));
+
+        CountDownLatch inFlight = new CountDownLatch(1);
+        CountDownLatch finish = new CountDownLatch(1);
+        CompletableFuture<Void> blocking = CompletableFuture.runAsync(() -> {
+            try {
+                limiter.intercept(request, new byte[0], (r, b) -> {
+                    inFlight.countDown();
+                    try {
+                        finish.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new MockClientHttpResponse(new byte[0], HttpStatus.OK);
+                }).close();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        }, executor);
+        assertThat(inFlight.await(5, TimeUnit.SECONDS)).isTrue();
+
+        assertThrows(AdaptiveConcurrencyLimitInterceptor.LimitExceededException.class,
+                () -> limiter.intercept(request, new byte[0], respondWith(HttpStatus.OK)));
+        assertThat(meterRegistry.get(AdaptiveConcurrencyLimitInterceptor.REJECTED).tag("host", HOST).counter().count())
+                .isEqualTo(1);
+
+        //Once the permit is back the next request goes through
+        finish.countDown();
+        blocking.get(5, TimeUnit.SECONDS);
+        assertThat(limiter.intercept(request, new byte[0], respondWith(HttpStatus.OK)).getStatusCode())
+                .isEqualTo(HttpStatus.OK);
+    }
+
+    @Test
+    void testPermitHeldUntilBodyClosed() throws Exception {
+        AdaptiveConcurrencyLimitInterceptor limiter = limiter(1, Duration.ZERO);
+
+        //Headers are in, the body is still being read
+        ClientHttpResponse response = limiter.intercept(request, new byte[0], respondWith(HttpStatus.OK));
+        assertThat(meterRegistry.get(AdaptiveConcurrencyLimitInterceptor.IN_FLIGHT).tag("host", HOST).gauge().value())
+                .isEqualTo(1);
+        assertThrows(AdaptiveConcurrencyLimitInterceptor.LimitExceededException.class,
+                () -> call(limiter, HttpStatus.OK));
+
+        response.close();
+        call(limiter, HttpStatus.OK);
+    }
+
+    @Test
+    void testPermitReleasedWhenStatusUnreadable() throws Exception {
+        AdaptiveConcurrencyLimitInterceptor limiter = limiter(1, Duration.ZERO);
+        AtomicBoolean closed = new AtomicBoolean();
+
+        //E.g. a status code out of range
+        assertThrows(IllegalArgumentException.class, () -> limiter.intercept(request, new byte[0],
+                (r, b) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK) {
+                    @Override
+                    public HttpStatusCode getStatusCode() {
+                        return HttpStatusCode.valueOf(42);
+                    }
+
+                    @Override
+                    public void close() {
+                        closed.set(true);
+                    }
+                }));
+
+        assertThat(closed).isTrue();
+        call(limiter, HttpStatus.OK);
+    }
+
+    @Test
+    void testSlowBodyShrinksLimit() throws Exception {
+        AdaptiveConcurrencyLimitInterceptor limiter = new AdaptiveConcurrencyLimitInterceptor(meterRegistry, 8, 1, 50,
+                0.5, 10.0, Duration.ZERO, 10);
+        for (int i = 0; i < 20; i++) {
+            call(limiter, HttpStatus.OK);
+        }
+        int limit = limiter.getLimit(HOST);
+
+        //Answered right away, but the body takes far longer than any round trip so far
+        ClientHttpResponse response = limiter.intercept(request, new byte[0], respondWith(HttpStatus.OK));
+        Thread.sleep(200);
+        response.close();
+
+        assertThat(limiter.getLimit(HOST)).isLessThan(limit);
+    }
+}
@@ -0,0 +1,147 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerDTOPageImpl;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.mock.http.MockHttpOutputMessage;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.web.client.RestTemplate;
+
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerBinaryConverterTest {
+
+    ObjectMapper jsonMapper = builder().build();
+
+    BeerDTO beer = BeerDTO.builder()
+            .id(UUID.randomUUID())
+            .version(3)
+            .beerName("Mango Bobs")
+            .beerStyle(BeerStyle.IPA)
+            .upc("0631234200036")
+            .quantityOnHand(122)
+            .price(new BigDecimal("12.990"))
+            .createdDate(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_789))
+            .updateDate(LocalDateTime.of(2024, 1, 2, 12, 0))
+            .build();
+
+    static Jackson2ObjectMapperBuilder builder() {
+        return Jackson2ObjectMapperBuilder.json().modulesToInstall(new ParameterNamesModule());
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = BeerWireFormat.class, names = {"CBOR", "SMILE"})
+    void testBeerRoundTrips(BeerWireFormat wireFormat) throws Exception {
+        BeerBinaryConverter converter = new BeerBinaryConverter(wireFormat, builder(), jsonMapper);
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(beer, null, output);
+        assertThat(output.getHeaders().getContentType()).isEqualTo(wireFormat.getMediaType());
+
+        MockHttpInputMessage input = new MockHttpInputMessage(output.getBodyAsBytes());
+        input.getHeaders().setContentType(wireFormat.getMediaType());
+        BeerDTO read = (BeerDTO) converter.read(BeerDTO.class, null, input);
+
+        assertThat(read).isEqualTo(beer);
+        assertThat(read.getPrice().scale()).isEqualTo(3);
+    }
+
+    @ParameterizedTest
+    @EnumSource(value = BeerWireFormat.class, names = {"CBOR", "SMILE"})
+    void testPageRoundTrips(BeerWireFormat wireFormat) throws Exception {
+        BeerBinaryConverter converter = new BeerBinaryConverter(wireFormat, builder(), jsonMapper);
+        List<BeerDTO> beers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            beers.add(beer.toBuilder().id(UUID.randomUUID()).beerName("Beer " + i).build());
+        }
+
+        //Shaped like the beer service's page, with the fields BeerDTOPageImpl ignores
+        Map<String, Object> page = new LinkedHashMap<>();
+        page.put("content", beers);
+        page.put("pageable", Map.of("pageNumber", 2));
+        page.put("number", 2);
+        page.put("size", 3);
+        page.put("totalElements", 42L);
+        page.put("totalPages", 14);
+
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(page, null, output);
+        MockHttpInputMessage input = new MockHttpInputMessage(output.getBodyAsBytes());
+        input.getHeaders().setContentType(wireFormat.getMediaType());
+
+        JavaType pageType = jsonMapper.getTypeFactory().constructParametricType(BeerDTOPageImpl.class, BeerDTO.class);
+        @SuppressWarnings("unchecked")
+        BeerDTOPageImpl<BeerDTO> read = (BeerDTOPageImpl<BeerDTO>) converter.read(pageType, null, input);
+
+        assertThat(read.getContent()).isEqualTo(beers);
+        assertThat(read.getNumber()).isEqualTo(2);
+        assertThat(read.getSize()).isEqualTo(3);
+        assertThat(read.getTotalElements()).isEqualTo(42L);
+    }
+
+    @Test
+    void testGoesBeforeJsonConverter() {
+        RestTemplate restTemplate = new RestTemplate();
+        BeerBinaryConverter converter = new BeerBinaryConverter(BeerWireFormat.CBOR, builder(), jsonMapper);
+
+        BeerBinaryConverter.removeDefaultBinaryConverters(restTemplate);
+        converter.addBeforeJsonConverter(restTemplate);
+
+        List<MediaType> mediaTypes = restTemplate.getMessageConverters().stream()
+                .filter(c -> c == converter || c instanceof MappingJackson2HttpMessageConverter)
+                .flatMap(c -> c.getSupportedMediaTypes().stream())
+                .toList();
+        assertThat(mediaTypes.get(0)).isEqualTo(MediaType.APPLICATION_CBOR);
+        assertThat(mediaTypes).contains(MediaType.APPLICATION_JSON)
+                .filteredOn(mediaType -> mediaType.getSubtype().contains("cbor") || mediaType.getSubtype().contains("smile"))
+                .containsExactly(MediaType.APPLICATION_CBOR);
+    }
+
+    @Test
+    void testResendsRefusedBodyAsJson() throws Exception {
+        BeerBinaryConverter converter = new BeerBinaryConverter(BeerWireFormat.SMILE, builder(), jsonMapper);
+        MockHttpOutputMessage output = new MockHttpOutputMessage();
+        converter.write(beer, null, output);
+
+        MockClientHttpRequest request = new MockClientHttpRequest(HttpMethod.POST, URI.create("http://localhost/api/v1/beer"));
+        request.getHeaders().setContentType(BeerWireFormat.SMILE.getMediaType());
+        List<MediaType> sentTypes = new ArrayList<>();
+        List<byte[]> sentBodies = new ArrayList<>();
+
+        var response = converter.intercept(request, output.getBodyAsBytes(), (req, body) -> {
+            sentTypes.add(req.getHeaders().getContentType());
+            sentBodies.add(body);
+            return new MockClientHttpResponse(new byte[0],
+                    sentBodies.size() == 1 ? HttpStatus.UNSUPPORTED_MEDIA_TYPE : HttpStatus.CREATED);
+        });
+
+        assertThat(response.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(sentTypes).containsExactly(BeerWireFormat.SMILE.getMediaType(), MediaType.APPLICATION_JSON);
+        assertThat(jsonMapper.readValue(sentBodies.get(1), BeerDTO.class)).isEqualTo(beer);
+        assertThat(converter.isBinaryRequests()).isFalse();
+        assertThat(converter.canWrite(BeerDTO.class, null)).isFalse();
+        assertThat(converter.canRead(BeerDTO.class, BeerWireFormat.SMILE.getMediaType())).isTrue();
+    }
+}
@@ -0,0 +1,58 @@
+package guru.springframework.spring6resttemplate.config;
+
+import guru.springframework.spring6resttemplate.client.BatchingBeerClient;
+import guru.springframework.spring6resttemplate.client.BeerClient;
+import guru.springframework.spring6resttemplate.client.BeerClientImpl;
+import guru.springframework.spring6resttemplate.client.HedgingBeerClient;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+class BeerClientConfigTest {
+
+    BeerClientImpl beerClientImpl = mock(BeerClientImpl.class);
+
+    //Boot's conversion service binds the Duration properties, such as 5ms
+    ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+            .withInitializer(context -> context.getBeanFactory()
+                    .setConversionService(ApplicationConversionService.getSharedInstance()))
+            .withBean(BeerClientImpl.class, () -> beerClientImpl)
+            .withUserConfiguration(BeerClientConfig.class, BatchingBeerClient.class, HedgingBeerClient.class);
+
+    @Test
+    void testImplWhenNothingEnabled() {
+        contextRunner.run(context -> assertThat(context.getBean(BeerClient.class)).isSameAs(beerClientImpl));
+    }
+
+    @Test
+    void testHedgingWrapsBatching() {
+        contextRunner.withPropertyValues("rest.template.hedging.enabled=true", "rest.template.batching.enabled=true",
+                        "rest.template.batching.idsParam=beerIds")
+                .run(context -> {
+                    BeerClient beerClient = context.getBean(BeerClient.class);
+                    assertThat(beerClient).isInstanceOf(HedgingBeerClient.class);
+                    assertThat(beerClient).extracting("delegate").isSameAs(context.getBean(BatchingBeerClient.class));
+                    assertThat(context.getBean(BatchingBeerClient.class)).extracting("delegate").isSameAs(beerClientImpl);
+                });
+    }
+
+    @Test
+    void testHedgingWrapsImpl() {
+        contextRunner.withPropertyValues("rest.template.hedging.enabled=true")
+                .run(context -> {
+                    assertThat(context).doesNotHaveBean(BatchingBeerClient.class);
+                    assertThat(context.getBean(BeerClient.class)).extracting("delegate").isSameAs(beerClientImpl);
+                });
+    }
+
+    @Test
+    void testBatchingWithoutIdsParamFailsStartup() {
+        contextRunner.withPropertyValues("rest.template.batching.enabled=true")
+                .run(context -> assertThat(context).hasFailed()
+                        .getFailure().hasRootCauseInstanceOf(IllegalStateException.class)
+                        .hasStackTraceContaining("rest.template.batching.idsParam"));
+    }
+}
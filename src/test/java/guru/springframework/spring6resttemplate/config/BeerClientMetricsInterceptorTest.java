@@ -0,0 +1,78 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class BeerClientMetricsInterceptorTest {
+
+    static final String BODY = "{\"beerName\":\"Mango Bobs\"}";
+
+    SimpleMeterRegistry meterRegistry;
+    RestTemplate restTemplate;
+    MockRestServiceServer server;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        restTemplate = new RestTemplate();
+        restTemplate.setInterceptors(List.of(new BeerClientMetricsInterceptor(meterRegistry)));
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @Test
+    void testTimersTaggedWithUriTemplate() {
+        for (int i = 1; i <= 3; i++) {
+            server.expect(requestTo("http://localhost:8080/api/v1/beer/" + i))
+                    .andRespond(withSuccess(BODY, MediaType.APPLICATION_JSON));
+        }
+
+        for (int i = 1; i <= 3; i++) {
+            restTemplate.getForObject("http://localhost:8080/api/v1/beer/" + i, String.class);
+        }
+
+        //Three different ids end up in one time series
+        Timer timer = meterRegistry.get(BeerClientMetricsInterceptor.REQUESTS)
+                .tag("uri", "/api/v1/beer/{beerId}")
+                .tag("method", "GET")
+                .tag("status", "200")
+                .timer();
+        assertThat(timer.count()).isEqualTo(3);
+        assertThat(meterRegistry.get(BeerClientMetricsInterceptor.RESPONSE_SIZE).summary().totalAmount())
+                .isEqualTo(3 * BODY.length());
+    }
+
+    @Test
+    void testErrorStatusRecorded() {
+        server.expect(requestTo("http://localhost:8080/api/v1/beer?pageNumber=1"))
+                .andRespond(withStatus(HttpStatus.NOT_FOUND));
+
+        assertThrows(HttpClientErrorException.class,
+                () -> restTemplate.getForObject("http://localhost:8080/api/v1/beer?pageNumber=1", String.class));
+
+        assertThat(meterRegistry.get(BeerClientMetricsInterceptor.REQUESTS)
+                .tag("uri", "/api/v1/beer")
+                .tag("outcome", "CLIENT_ERROR")
+                .timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void testUnknownPathsShareOneTag() {
+        assertThat(BeerClientMetricsInterceptor.uriTemplate("/api/v1/customer/42"))
+                .isEqualTo(BeerClientMetricsInterceptor.UNKNOWN_URI);
+    }
+}
@@ -0,0 +1,50 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.mock.http.MockHttpInputMessage;
+import org.springframework.web.client.RestTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerJsonConverterTest {
+
+    BeerJsonConverter converter = new BeerJsonConverter(Jackson2ObjectMapperBuilder.json()
+            .modulesToInstall(new ParameterNamesModule()).build());
+
+    @Test
+    void testReplacesJsonConverterOfRestTemplate() {
+        RestTemplate restTemplate = new RestTemplate();
+        converter.replaceJsonConverter(restTemplate);
+
+        assertThat(restTemplate.getMessageConverters())
+                .filteredOn(MappingJackson2HttpMessageConverter.class::isInstance)
+                .containsExactly(converter);
+        assertThat(converter.getObjectMapper().getRegisteredModuleIds()).contains(new BlackbirdModule().getTypeId());
+    }
+
+    @Test
+    void testReadsBeer() throws Exception {
+        UUID id = UUID.randomUUID();
+        MockHttpInputMessage message = new MockHttpInputMessage(("{\"id\":\"" + id + "\",\"beerName\":\"Mango Bobs\","
+                + "\"beerStyle\":\"ALE\",\"price\":\"12.99\",\"createdDate\":\"2024-01-01T12:00:00\"}")
+                .getBytes(StandardCharsets.UTF_8));
+        message.getHeaders().setContentType(MediaType.APPLICATION_JSON);
+
+        BeerDTO beer = (BeerDTO) converter.read(BeerDTO.class, message);
+
+        assertThat(beer.getId()).isEqualTo(id);
+        assertThat(beer.getBeerName()).isEqualTo("Mango Bobs");
+        assertThat(beer.getBeerStyle()).isEqualTo(BeerStyle.ALE);
+        assertThat(beer.getCreatedDate()).isNotNull();
+    }
+}
@@ -0,0 +1,168 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.HttpComponentsClientHttpRequestFactory;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.zip.GZIPOutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.headerDoesNotExist;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withCreatedEntity;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withUnauthorizedRequest;
+
+class ContentEncodingMetricsTest {
+
+    static final String BODY = "{\"content\":[" + "{\"beerName\":\"Mango Bobs\",\"beerStyle\":\"IPA\"},".repeat(200)
+            + "{}],\"totalElements\":201}";
+
+    SimpleMeterRegistry meterRegistry;
+    ContentEncodingMetrics metrics;
+    HttpServer server;
+    AtomicReference<String> acceptEncoding = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() throws IOException {
+        meterRegistry = new SimpleMeterRegistry();
+        metrics = new ContentEncodingMetrics(meterRegistry);
+
+        //Answers with a gzipped body, like a server with response compression turned on
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/beer", exchange -> {
+            acceptEncoding.set(exchange.getRequestHeaders().getFirst(HttpHeaders.ACCEPT_ENCODING));
+            byte[] gzipped = gzip(BODY.getBytes(StandardCharsets.UTF_8));
+            exchange.getResponseHeaders().add(HttpHeaders.CONTENT_TYPE, "application/json");
+            exchange.getResponseHeaders().add(HttpHeaders.CONTENT_ENCODING, "gzip");
+            exchange.sendResponseHeaders(200, gzipped.length);
+            try (OutputStream body = exchange.getResponseBody()) {
+                body.write(gzipped);
+            }
+        });
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+    }
+
+    static byte[] gzip(byte[] bytes) throws IOException {
+        ByteArrayOutputStream compressed = new ByteArrayOutputStream();
+        try (GZIPOutputStream gzip = new GZIPOutputStream(compressed)) {
+            gzip.write(bytes);
+        }
+        return compressed.toByteArray();
+    }
+
+    RestTemplateBuilderConfig config() {
+        RestTemplateBuilderConfig config = new RestTemplateBuilderConfig();
+        config.poolMaxTotal = 10;
+        config.poolMaxPerRoute = 10;
+        config.poolKeepAlive = Duration.ofSeconds(30);
+        config.poolEvictIdleAfter = Duration.ofSeconds(60);
+        config.connectTimeout = Duration.ofSeconds(2);
+        config.readTimeout = Duration.ofSeconds(2);
+        config.poolAcquireTimeout = Duration.ofSeconds(2);
+        config.compressionEnabled = true;
+        config.requestGzipMinSize = DataSize.ofKilobytes(2);
+        return config;
+    }
+
+    @Test
+    void testResponseNegotiatedAndCounted() throws IOException {
+        RestTemplateBuilderConfig config = config();
+        try (PoolingHttpClientConnectionManager connectionManager = config.poolingConnectionManager();
+             CloseableHttpClient httpClient = config.beerHttpClient(connectionManager, metrics)) {
+
+            RestTemplate restTemplate = new RestTemplate(new HttpComponentsClientHttpRequestFactory(httpClient));
+            String url = "http://localhost:" + server.getAddress().getPort() + "/api/v1/beer";
+
+            assertThat(restTemplate.getForObject(url, String.class)).isEqualTo(BODY);
+        }
+
+        assertThat(acceptEncoding.get()).contains("br", "gzip", "deflate");
+
+        double wire = meterRegistry.get(ContentEncodingMetrics.RESPONSE_BYTES)
+                .tag("layer", "wire").tag("encoding", "gzip").counter().count();
+        double decoded = meterRegistry.get(ContentEncodingMetrics.RESPONSE_BYTES)
+                .tag("layer", "decoded").tag("encoding", "gzip").counter().count();
+        assertThat(decoded).isEqualTo(BODY.length());
+        assertThat(wire).isPositive().isLessThan(decoded / 10);
+    }
+
+    @Test
+    void testLargeRequestBodyGzipped() throws IOException {
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.setInterceptors(List.of(new GzipRequestInterceptor(1024, metrics)));
+        MockRestServiceServer mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+
+        byte[] expected = gzip(BODY.getBytes(StandardCharsets.UTF_8));
+        mockServer.expect(method(HttpMethod.POST))
+                .andExpect(header(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andExpect(request -> assertThat(((MockClientHttpRequest) request)
+                        .getBodyAsBytes()).isEqualTo(expected))
+                .andRespond(withCreatedEntity(URI.create("/api/v1/beer/1")));
+
+        restTemplate.postForLocation("http://localhost:8080/api/v1/beer", BODY);
+
+        mockServer.verify();
+        assertThat(meterRegistry.get(ContentEncodingMetrics.REQUEST_BYTES)
+                .tag("layer", "wire").tag("encoding", "gzip").counter().count()).isEqualTo(expected.length);
+    }
+
+    @Test
+    void testGzippedBodyResentAfterUnauthorized() {
+        //Sends the request once more on a 401, like the interceptors ahead of gzip that retry
+        ClientHttpRequestInterceptor resend = (request, body, execution) -> {
+            ClientHttpResponse response = execution.execute(request, body);
+            if (response.getStatusCode().value() != HttpStatus.UNAUTHORIZED.value()) {
+                return response;
+            }
+            response.close();
+            return execution.execute(request, body);
+        };
+        RestTemplate restTemplate = new RestTemplate();
+        restTemplate.setInterceptors(List.of(resend, new GzipRequestInterceptor(1024, metrics)));
+        MockRestServiceServer mockServer = MockRestServiceServer.bindTo(restTemplate).build();
+
+        byte[] plain = BODY.getBytes(StandardCharsets.UTF_8);
+        mockServer.expect(method(HttpMethod.POST))
+                .andExpect(header(HttpHeaders.CONTENT_ENCODING, "gzip"))
+                .andRespond(withUnauthorizedRequest());
+        //The resend skips gzip, its plain body must not be labelled gzip or carry the gzipped length
+        mockServer.expect(method(HttpMethod.POST))
+                .andExpect(headerDoesNotExist(HttpHeaders.CONTENT_ENCODING))
+                .andExpect(header(HttpHeaders.CONTENT_LENGTH, String.valueOf(plain.length)))
+                .andExpect(request -> assertThat(((MockClientHttpRequest) request).getBodyAsBytes()).isEqualTo(plain))
+                .andRespond(withCreatedEntity(URI.create("/api/v1/beer/1")));
+
+        restTemplate.postForLocation("http://localhost:8080/api/v1/beer", BODY);
+
+        mockServer.verify();
+    }
+}
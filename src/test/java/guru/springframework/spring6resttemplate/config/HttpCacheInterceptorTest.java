@@ -0,0 +1,137 @@
+package guru.springframework.spring6resttemplate.config;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.RestTemplate;
+
+import java.time.ZonedDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.header;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withNoContent;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class HttpCacheInterceptorTest {
+
+    static final String BEER_URL = "http://localhost:8080/api/v1/beer/1";
+    static final String LIST_URL = "http://localhost:8080/api/v1/beer?beerName=ALE";
+
+    RestTemplate restTemplate;
+    MockRestServiceServer server;
+
+    @BeforeEach
+    void setUp() {
+        restTemplate = new RestTemplate();
+        restTemplate.setInterceptors(List.of(new HttpCacheInterceptor(1024 * 1024)));
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @Test
+    void testFreshEntryServedWithoutRequest() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+
+        //Only one request is expected, the second read comes from the cache
+        server.expect(requestTo(BEER_URL))
+                .andRespond(withSuccess("{\"beerName\":\"Mango Bobs\"}", MediaType.APPLICATION_JSON).headers(headers));
+
+        assertThat(restTemplate.getForObject(BEER_URL, String.class)).contains("Mango Bobs");
+        assertThat(restTemplate.getForObject(BEER_URL, String.class)).contains("Mango Bobs");
+
+        server.verify();
+    }
+
+    @Test
+    void testExpiresOnlyEntryServedWithoutRequest() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setExpires(ZonedDateTime.now().plusMinutes(1));
+
+        //No validator and no max-age, the Expires date alone makes the response fresh for a minute
+        server.expect(requestTo(BEER_URL))
+                .andRespond(withSuccess("{\"beerName\":\"Mango Bobs\"}", MediaType.APPLICATION_JSON).headers(headers));
+
+        assertThat(restTemplate.getForObject(BEER_URL, String.class)).contains("Mango Bobs");
+        assertThat(restTemplate.getForObject(BEER_URL, String.class)).contains("Mango Bobs");
+
+        server.verify();
+    }
+
+    @Test
+    void testStaleEntryRevalidatedWithETag() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setETag("\"v1\"");
+        headers.setCacheControl("no-cache");
+
+        server.expect(requestTo(BEER_URL))
+                .andRespond(withSuccess("{\"beerName\":\"Mango Bobs\"}", MediaType.APPLICATION_JSON).headers(headers));
+
+        //The cached copy is still good, the body of the 304 is taken from the store
+        server.expect(requestTo(BEER_URL))
+                .andExpect(header(HttpHeaders.IF_NONE_MATCH, "\"v1\""))
+                .andRespond(withStatus(HttpStatus.NOT_MODIFIED).headers(headers));
+
+        restTemplate.getForObject(BEER_URL, String.class);
+        assertThat(restTemplate.getForObject(BEER_URL, String.class)).contains("Mango Bobs");
+
+        server.verify();
+    }
+
+    @Test
+    void testUpdateInvalidatesResourceAndList() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+
+        server.expect(requestTo(BEER_URL))
+                .andRespond(withSuccess("{\"beerName\":\"Mango Bobs\"}", MediaType.APPLICATION_JSON).headers(headers));
+        server.expect(requestTo(LIST_URL))
+                .andRespond(withSuccess("{\"content\":[]}", MediaType.APPLICATION_JSON).headers(headers));
+        server.expect(method(HttpMethod.PUT))
+                .andRespond(withNoContent());
+
+        //After the PUT both entries are gone and have to be fetched again
+        server.expect(requestTo(BEER_URL))
+                .andRespond(withSuccess("{\"beerName\":\"Mango Bobs 2\"}", MediaType.APPLICATION_JSON).headers(headers));
+        server.expect(requestTo(LIST_URL))
+                .andRespond(withSuccess("{\"content\":[]}", MediaType.APPLICATION_JSON).headers(headers));
+
+        restTemplate.getForObject(BEER_URL, String.class);
+        restTemplate.getForObject(LIST_URL, String.class);
+        restTemplate.put(BEER_URL, "{}");
+
+        assertThat(restTemplate.getForObject(BEER_URL, String.class)).contains("Mango Bobs 2");
+        restTemplate.getForObject(LIST_URL, String.class);
+
+        server.verify();
+    }
+
+    @Test
+    void testUpdateKeepsOtherResources() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.setCacheControl("max-age=60");
+        String otherBeerUrl = "http://localhost:8080/api/v1/beer/2";
+
+        server.expect(requestTo(BEER_URL))
+                .andRespond(withSuccess("{\"beerName\":\"Mango Bobs\"}", MediaType.APPLICATION_JSON).headers(headers));
+        server.expect(requestTo(otherBeerUrl))
+                .andRespond(withSuccess("{\"beerName\":\"Galaxy Cat\"}", MediaType.APPLICATION_JSON).headers(headers));
+        server.expect(method(HttpMethod.PUT))
+                .andRespond(withNoContent());
+
+        restTemplate.getForObject(BEER_URL, String.class);
+        restTemplate.getForObject(otherBeerUrl, String.class);
+        restTemplate.put(BEER_URL, "{}");
+
+        //Only /api/v1/beer/1 and the /api/v1/beer pages are dropped
+        assertThat(restTemplate.getForObject(otherBeerUrl, String.class)).contains("Galaxy Cat");
+        server.verify();
+    }
+}
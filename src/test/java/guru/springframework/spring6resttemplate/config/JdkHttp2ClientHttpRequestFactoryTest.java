@@ -0,0 +1,123 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.HttpClientErrorException;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JdkHttp2ClientHttpRequestFactoryTest {
+
+    HttpServer server;
+    ExecutorService serverExecutor;
+    String baseUrl;
+    SimpleMeterRegistry meterRegistry;
+    JdkHttp2ClientHttpRequestFactory requestFactory;
+    RestTemplate restTemplate;
+
+    //The JDK's own server only speaks HTTP/1.1, so every h2c upgrade is declined
+    @BeforeEach
+    void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/v1/beer", exchange -> {
+            byte[] requestBody = exchange.getRequestBody().readAllBytes();
+            String answer = exchange.getRequestMethod() + " " + exchange.getRequestHeaders().getFirst("X-Test")
+                    + " " + new String(requestBody, StandardCharsets.UTF_8);
+            byte[] responseBody = answer.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "text/plain");
+            exchange.sendResponseHeaders(exchange.getRequestURI().getQuery() == null ? 200 : 404, responseBody.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(responseBody);
+            }
+        });
+        //Sends the headers and the first bytes of the body, then stalls
+        server.createContext("/api/v1/stalled", exchange -> {
+            exchange.sendResponseHeaders(200, 100);
+            OutputStream out = exchange.getResponseBody();
+            out.write("partial".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            exchange.close();
+        });
+        serverExecutor = Executors.newCachedThreadPool();
+        server.setExecutor(serverExecutor);
+        server.start();
+        baseUrl = "http://localhost:" + server.getAddress().getPort() + "/api/v1/beer";
+
+        meterRegistry = new SimpleMeterRegistry();
+        requestFactory = new JdkHttp2ClientHttpRequestFactory(Duration.ofSeconds(2), Duration.ofMillis(500), 2,
+                meterRegistry);
+        restTemplate = new RestTemplate(requestFactory);
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.stop(0);
+        serverExecutor.shutdownNow();
+        requestFactory.destroy();
+    }
+
+    @Test
+    void testFallsBackToHttp11() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.set("X-Test", "header");
+        headers.setContentType(MediaType.TEXT_PLAIN);
+
+        //More requests than streams, each stream is freed again once its response is closed
+        for (int i = 0; i < 5; i++) {
+            ResponseEntity<String> response = restTemplate.exchange(baseUrl, HttpMethod.POST,
+                    new HttpEntity<>("body", headers), String.class);
+
+            assertThat(response.getStatusCode()).isEqualTo(HttpStatus.OK);
+            assertThat(response.getHeaders().getContentType()).isEqualTo(MediaType.TEXT_PLAIN);
+            assertThat(response.getBody()).isEqualTo("POST header body");
+        }
+        assertThat(meterRegistry.get(JdkHttp2ClientHttpRequestFactory.RESPONSES).tag("version", "HTTP_1_1")
+                .counter().count()).isEqualTo(5);
+        assertThat(meterRegistry.get("beer.client.http2.streams").gauge().value()).isZero();
+    }
+
+    @Test
+    void testErrorStatus() {
+        assertThrows(HttpClientErrorException.NotFound.class,
+                () -> restTemplate.getForObject(baseUrl + "?missing", String.class));
+        assertThat(meterRegistry.get("beer.client.http2.streams").gauge().value()).isZero();
+    }
+
+    @Test
+    void testStalledBodyTimesOut() {
+        long start = System.nanoTime();
+        //Failing while the body is read, RestTemplate wraps it in a plain RestClientException
+        RestClientException e = assertThrows(RestClientException.class,
+                () -> restTemplate.getForObject(baseUrl.replace("beer", "stalled"), String.class));
+
+        assertThat(e).hasRootCauseInstanceOf(SocketTimeoutException.class);
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(5));
+        assertThat(meterRegistry.get("beer.client.http2.streams").gauge().value()).isZero();
+    }
+}
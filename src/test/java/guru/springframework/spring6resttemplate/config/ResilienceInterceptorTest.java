@@ -0,0 +1,151 @@
+package guru.springframework.spring6resttemplate.config;
+
+import io.github.resilience4j.bulkhead.Bulkhead;
+import io.github.resilience4j.bulkhead.BulkheadRegistry;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import io.github.resilience4j.core.IntervalFunction;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.mock.http.client.MockClientHttpRequest;
+import org.springframework.mock.http.client.MockClientHttpResponse;
+import org.springframework.test.web.client.ExpectedCount;
+import org.springframework.test.web.client.MockRestServiceServer;
+import org.springframework.web.client.HttpServerErrorException;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.URI;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.method;
+import static org.springframework.test.web.client.match.MockRestRequestMatchers.requestTo;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withStatus;
+import static org.springframework.test.web.client.response.MockRestResponseCreators.withSuccess;
+
+class ResilienceInterceptorTest {
+
+    static final String BEER_URL = "http://localhost:8080/api/v1/beer/1";
+    static final String LIST_URL = "http://localhost:8080/api/v1/beer";
+
+    CircuitBreakerRegistry circuitBreakerRegistry;
+    RestTemplate restTemplate;
+    MockRestServiceServer server;
+
+    @BeforeEach
+    void setUp() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .slidingWindowSize(4)
+                .minimumNumberOfCalls(4)
+                .build());
+
+        restTemplate = new RestTemplate();
+        restTemplate.setInterceptors(List.of(new ResilienceInterceptor(circuitBreakerRegistry,
+                BulkheadRegistry.ofDefaults(), 3, IntervalFunction.of(1))));
+        server = MockRestServiceServer.bindTo(restTemplate).build();
+    }
+
+    @Test
+    void testGetRetriedOnServiceUnavailable() {
+        server.expect(ExpectedCount.twice(), requestTo(BEER_URL))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+        server.expect(requestTo(BEER_URL))
+                .andRespond(withSuccess("{\"beerName\":\"Mango Bobs\"}", MediaType.APPLICATION_JSON));
+
+        assertThat(restTemplate.getForObject(BEER_URL, String.class)).contains("Mango Bobs");
+        server.verify();
+    }
+
+    @Test
+    void testPostNotRetried() {
+        server.expect(ExpectedCount.once(), method(HttpMethod.POST))
+                .andRespond(withStatus(HttpStatus.SERVICE_UNAVAILABLE));
+
+        assertThrows(HttpServerErrorException.class, () -> restTemplate.postForLocation(LIST_URL, "{}"));
+        server.verify();
+    }
+
+    @Test
+    void testBreakerOpensAndFailsFast() {
+        server.expect(ExpectedCount.times(4), requestTo(BEER_URL))
+                .andRespond(withStatus(HttpStatus.INTERNAL_SERVER_ERROR));
+
+        //500 isn't retried, four failed calls fill the window and open the breaker
+        for (int i = 0; i < 4; i++) {
+            assertThrows(HttpServerErrorException.class, () -> restTemplate.getForObject(BEER_URL, String.class));
+        }
+
+        assertThat(circuitBreakerRegistry.circuitBreaker("GET /api/v1/beer/{beerId}").getState())
+                .isEqualTo(CircuitBreaker.State.OPEN);
+        assertThrows(CallNotPermittedException.class, () -> restTemplate.getForObject(BEER_URL, String.class));
+        server.verify();
+    }
+
+    @Test
+    void testRuntimeExceptionRecordedInHalfOpen() {
+        circuitBreakerRegistry = CircuitBreakerRegistry.of(CircuitBreakerConfig.custom()
+                .permittedNumberOfCallsInHalfOpenState(1)
+                .build());
+        restTemplate.setInterceptors(List.of(new ResilienceInterceptor(circuitBreakerRegistry,
+                BulkheadRegistry.ofDefaults(), 3, IntervalFunction.of(1))));
+        CircuitBreaker circuitBreaker = circuitBreakerRegistry.circuitBreaker("GET /api/v1/beer/{beerId}");
+        circuitBreaker.transitionToOpenState();
+        circuitBreaker.transitionToHalfOpenState();
+
+        //Like an exception from the request factory, it isn't retried
+        server.expect(ExpectedCount.once(), requestTo(BEER_URL)).andRespond(request -> {
+            throw new IllegalStateException("Connection pool shut down");
+        });
+
+        assertThrows(IllegalStateException.class, () -> restTemplate.getForObject(BEER_URL, String.class));
+
+        //The only trial call failed, so the breaker opens again instead of waiting for its permission forever
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        server.verify();
+    }
+
+    @Test
+    void testBulkheadPermitHeldUntilResponseClosed() throws Exception {
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+        ResilienceInterceptor interceptor = new ResilienceInterceptor(circuitBreakerRegistry, bulkheadRegistry, 3,
+                IntervalFunction.of(1));
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead("GET /api/v1/beer/{beerId}");
+        int maxConcurrentCalls = bulkhead.getBulkheadConfig().getMaxConcurrentCalls();
+
+        ClientHttpResponse response = interceptor.intercept(
+                new MockClientHttpRequest(HttpMethod.GET, URI.create(BEER_URL)), new byte[0],
+                (request, body) -> new MockClientHttpResponse(new byte[0], HttpStatus.OK));
+
+        //The body is still to be read, the call is in flight
+        assertThat(bulkhead.getMetrics().getAvailableConcurrentCalls()).isEqualTo(maxConcurrentCalls - 1);
+        response.close();
+        response.close();
+        assertThat(bulkhead.getMetrics().getAvailableConcurrentCalls()).isEqualTo(maxConcurrentCalls);
+    }
+
+    @Test
+    void testBulkheadPermitReleasedOnFailure() {
+        BulkheadRegistry bulkheadRegistry = BulkheadRegistry.ofDefaults();
+        ResilienceInterceptor interceptor = new ResilienceInterceptor(circuitBreakerRegistry, bulkheadRegistry, 1,
+                IntervalFunction.of(1));
+        Bulkhead bulkhead = bulkheadRegistry.bulkhead("GET /api/v1/beer/{beerId}");
+        int maxConcurrentCalls = bulkhead.getBulkheadConfig().getMaxConcurrentCalls();
+
+        assertThrows(IOException.class, () -> interceptor.intercept(
+                new MockClientHttpRequest(HttpMethod.GET, URI.create(BEER_URL)), new byte[0],
+                (request, body) -> {
+                    throw new IOException("Connection reset");
+                }));
+
+        assertThat(bulkhead.getMetrics().getAvailableConcurrentCalls()).isEqualTo(maxConcurrentCalls);
+    }
+}
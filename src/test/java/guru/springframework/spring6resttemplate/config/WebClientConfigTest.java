@@ -0,0 +1,96 @@
+package guru.springframework.spring6resttemplate.config;
+
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.module.paramnames.ParameterNamesModule;
+import guru.springframework.spring6resttemplate.client.ReactiveBeerClient;
+import guru.springframework.spring6resttemplate.client.ReactiveBeerClientImpl;
+import guru.springframework.spring6resttemplate.stub.BeerStubServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.codec.json.Jackson2JsonDecoder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.security.oauth2.client.InMemoryOAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClient;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientManager;
+import org.springframework.security.oauth2.client.OAuth2AuthorizedClientService;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ClientRegistrationRepository;
+import org.springframework.security.oauth2.client.registration.InMemoryClientRegistrationRepository;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.web.reactive.function.client.WebClient;
+import org.springframework.web.reactive.function.client.WebClientResponseException;
+import reactor.test.StepVerifier;
+
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebClientConfigTest {
+
+    static final String CLIENT_ID = "messaging-client";
+
+    BeerStubServer stubServer;
+    OAuth2AuthorizedClientService authorizedClientService;
+    ReactiveBeerClient beerClient;
+
+    @BeforeEach
+    void setUp() {
+        stubServer = new BeerStubServer(10).start();
+
+        ClientRegistrationRepository clientRegistrationRepository = new InMemoryClientRegistrationRepository(
+                ClientRegistration.withRegistrationId("springauth")
+                        .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                        .clientId(CLIENT_ID)
+                        .clientSecret("secret")
+                        .tokenUri(stubServer.getTokenUri())
+                        .build());
+        authorizedClientService = new InMemoryOAuth2AuthorizedClientService(clientRegistrationRepository);
+
+        RestTemplateBuilderConfig restTemplateBuilderConfig = new RestTemplateBuilderConfig();
+        OAuth2AuthorizedClientManager manager = restTemplateBuilderConfig
+                .auth2AuthorizedClientManager(clientRegistrationRepository, authorizedClientService);
+        OAuthClientInterceptor interceptor = new OAuthClientInterceptor(manager, clientRegistrationRepository,
+                authorizedClientService, new SimpleMeterRegistry());
+
+        //Boot's ObjectMapper defaults, BeerDTO is bound through its all-args constructor
+        ObjectMapper objectMapper = Jackson2ObjectMapperBuilder.json()
+                .modulesToInstall(new ParameterNamesModule(JsonCreator.Mode.DEFAULT))
+                .build();
+        WebClientConfig webClientConfig = new WebClientConfig();
+        webClientConfig.rootUrl = stubServer.getRootUrl();
+        beerClient = new ReactiveBeerClientImpl(webClientConfig.beerWebClient(WebClient.builder()
+                        .codecs(codecs -> codecs.defaultCodecs().jackson2JsonDecoder(new Jackson2JsonDecoder(objectMapper))),
+                manager, authorizedClientService, interceptor));
+    }
+
+    @AfterEach
+    void tearDown() {
+        stubServer.close();
+    }
+
+    OAuth2AuthorizedClient storedClient() {
+        return authorizedClientService.loadAuthorizedClient("springauth", CLIENT_ID);
+    }
+
+    @Test
+    void testUnauthorizedDropsStoredToken() {
+        UUID beerId = stubServer.beer(0).getId();
+        StepVerifier.create(beerClient.getBeerById(beerId)).expectNextCount(1).verifyComplete();
+
+        //Stored under the client id, where OAuthClientInterceptor looks for it too
+        assertThat(storedClient()).isNotNull();
+
+        stubServer.rejectTokens(1);
+        StepVerifier.create(beerClient.getBeerById(beerId))
+                .expectError(WebClientResponseException.Unauthorized.class)
+                .verify();
+        assertThat(storedClient()).isNull();
+
+        //The next request fetches a new token instead of sending the rejected one again
+        StepVerifier.create(beerClient.getBeerById(beerId)).expectNextCount(1).verifyComplete();
+        assertThat(stubServer.getTokenRequests()).isEqualTo(2);
+    }
+}
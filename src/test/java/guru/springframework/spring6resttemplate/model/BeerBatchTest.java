@@ -0,0 +1,88 @@
+package guru.springframework.spring6resttemplate.model;
+
+import org.junit.jupiter.api.Test;
+import org.openjdk.jol.info.GraphLayout;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BeerBatchTest {
+
+    BeerDTO beer(int index) {
+        return BeerDTO.builder()
+                .id(UUID.randomUUID())
+                .version(index)
+                .beerName("Beer " + (index % 3))
+                .beerStyle(BeerStyle.values()[index % BeerStyle.values().length])
+                .upc("0063123" + index)
+                .quantityOnHand(index * 10)
+                .price(new BigDecimal("12.99"))
+                .createdDate(LocalDateTime.of(2024, 1, 1, 12, 0, 0, 123_456_789))
+                .updateDate(LocalDateTime.of(1960, 6, 30, 8, 15))
+                .build();
+    }
+
+    @Test
+    void testRoundTrip() {
+        List<BeerDTO> beers = IntStream.range(0, 100).mapToObj(this::beer).toList();
+
+        BeerBatch batch = beers.stream().collect(BeerBatch.collector());
+
+        //Grows past the initial capacity and gives every field back unchanged
+        assertThat(batch).hasSize(100);
+        assertThat(batch).containsExactlyElementsOf(beers);
+    }
+
+    @Test
+    void testNullsAndOddValues() {
+        BeerDTO empty = BeerDTO.builder().build();
+        BeerDTO odd = BeerDTO.builder()
+                .id(new UUID(0, 0))
+                .upc("ABC-123")
+                .price(new BigDecimal("3.14159"))
+                .build();
+
+        BeerBatch batch = BeerBatch.of(List.of(empty, odd));
+
+        assertThat(batch.get(0)).isEqualTo(empty);
+        assertThat(batch.get(1)).isEqualTo(odd);
+    }
+
+    @Test
+    void testPricesComeBackWithScaleTwo() {
+        BeerBatch batch = BeerBatch.of(List.of(BeerDTO.builder().price(new BigDecimal("7.5")).build()));
+
+        assertThat(batch.get(0).getPrice()).isEqualTo(new BigDecimal("7.50"));
+    }
+
+    @Test
+    void testPageReadsContentFromBatch() {
+        BeerBatch batch = BeerBatch.of(List.of(beer(1), beer(2)));
+
+        BeerBatchPage page = new BeerBatchPage(batch, 0, 25, 60);
+
+        assertThat(page.getNumberOfElements()).isEqualTo(2);
+        assertThat(page.getContent()).isSameAs(batch);
+        assertThat(page.getTotalPages()).isEqualTo(3);
+        assertThat(page.map(BeerDTO::getBeerName).getContent()).containsExactly("Beer 1", "Beer 2");
+    }
+
+    @Test
+    void testRetainedSizePerRow() {
+        int rows = 10_000;
+        List<BeerDTO> beers = IntStream.range(0, rows).mapToObj(this::beer).toList();
+        BeerBatch batch = BeerBatch.of(beers);
+
+        //Everything reachable from either list, as JOL counts it for this JVM
+        long listBytesPerRow = GraphLayout.parseInstance(beers).totalSize() / rows;
+        long batchBytesPerRow = GraphLayout.parseInstance(batch).totalSize() / rows;
+        //About 400 against 70 bytes with compressed oops, names shared and UPCs kept as longs in the batch
+        assertThat(listBytesPerRow).isGreaterThan(300);
+        assertThat(batchBytesPerRow).isLessThan(100);
+    }
+}
@@ -0,0 +1,311 @@
+package guru.springframework.spring6resttemplate.stub;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import guru.springframework.spring6resttemplate.client.BeerClientImpl;
+import guru.springframework.spring6resttemplate.model.BeerDTO;
+import guru.springframework.spring6resttemplate.model.BeerStyle;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * In-process stand-in for the beer service and its authorization server, used by benchmarks and load tests.
+ * It serves canned BeerDTO / page JSON on localhost and hands out a fake client credentials token,
+ * so the real BeerClientImpl and OAuthClientInterceptor can be driven without any network.
+ * <p>
+ * Latency, slow, failed and unauthorized requests and the token lifetime can be set for load tests, by default every
+ * answer is immediate and successful. It counts token requests and the client connections it has seen.
+ */
+public class BeerStubServer implements AutoCloseable {
+
+    public static final String TOKEN_PATH = "/oauth2/token";
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    private final long catalogueSize;
+    private final byte[] beerJson;
+
+    //Page bodies are built once per page number and size, so the stub doesn't dominate the measurements
+    private final Map<String, byte[]> pageJson = new ConcurrentHashMap<>();
+
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger pageRequests = new AtomicInteger();
+    private final AtomicInteger tokenRequests = new AtomicInteger();
+    private final AtomicInteger failedRequests = new AtomicInteger();
+    private final AtomicInteger unauthorizedRequests = new AtomicInteger();
+
+    //Remote address of every connection, a new client port means a new TCP connection
+    private final Set<InetSocketAddress> connections = ConcurrentHashMap.newKeySet();
+
+    private volatile long latencyNanos;
+    private volatile long latencyJitterNanos;
+    private volatile double slowRate;
+    private volatile long slowLatencyNanos;
+    private volatile double errorRate;
+    private volatile long tokenLifetimeSeconds = 3600;
+
+    public BeerStubServer(long catalogueSize) {
+        //Without it the headers and the body go out in separate segments and Nagle adds a delayed ACK, ~40ms,
+        //to every response. Read once, when the first server is created.
+        System.setProperty("sun.net.httpserver.nodelay", "true");
+
+        this.catalogueSize = catalogueSize;
+        this.beerJson = toJson(beer(0));
+
+        try {
+            this.server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        this.executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext(TOKEN_PATH, this::handleToken);
+        server.createContext(BeerClientImpl.GET_BEER_PATH, this::handleBeer);
+    }
+
+    public BeerStubServer start() {
+        server.start();
+        return this;
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    public String getRootUrl() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    //Beer API requests received so far, token requests aside
+    public int getRequests() {
+        return requests.get();
+    }
+
+    //Number of listBeers pages served so far
+    public int getPageRequests() {
+        return pageRequests.get();
+    }
+
+    public int getTokenRequests() {
+        return tokenRequests.get();
+    }
+
+    //Requests answered with an injected 503
+    public int getFailedRequests() {
+        return failedRequests.get();
+    }
+
+    public int getConnections() {
+        return connections.size();
+    }
+
+    //Every beer API and token request takes latency plus a uniformly random part of jitter
+    public BeerStubServer setLatency(Duration latency, Duration jitter) {
+        this.latencyNanos = latency.toNanos();
+        this.latencyJitterNanos = jitter.toNanos();
+        return this;
+    }
+
+    //Share of beer API requests, 0 to 1, taking slowLatency instead, a heavy tail like that of a slow replica
+    public BeerStubServer setSlowResponses(double slowRate, Duration slowLatency) {
+        this.slowRate = slowRate;
+        this.slowLatencyNanos = slowLatency.toNanos();
+        return this;
+    }
+
+    //Share of beer API requests, 0 to 1, answered with 503 Service Unavailable
+    public BeerStubServer setErrorRate(double errorRate) {
+        this.errorRate = errorRate;
+        return this;
+    }
+
+    //The next count beer API requests are answered with 401 Unauthorized, as if their token had been revoked
+    public BeerStubServer rejectTokens(int count) {
+        unauthorizedRequests.set(count);
+        return this;
+    }
+
+    //expires_in of the tokens handed out, short lifetimes make the client refresh often
+    public BeerStubServer setTokenLifetime(Duration tokenLifetime) {
+        this.tokenLifetimeSeconds = tokenLifetime.toSeconds();
+        return this;
+    }
+
+    public String getTokenUri() {
+        return getRootUrl() + TOKEN_PATH;
+    }
+
+    //Command line arguments pointing the application at this stub, they take precedence over application.properties
+    public String[] commandLineArgs() {
+        return new String[]{
+                "--rest.template.rootUrl=" + getRootUrl(),
+                "--spring.security.oauth2.client.provider.springauth.token-uri=" + getTokenUri(),
+                "--server.port=0",
+                "--logging.level.root=WARN"
+        };
+    }
+
+    public BeerDTO beer(long index) {
+        return BeerDTO.builder()
+                .id(new UUID(0, index))
+                .version(1)
+                .beerName("Stub Beer " + index)
+                .beerStyle(BeerStyle.values()[(int) (index % BeerStyle.values().length)])
+                .upc("0631234" + index)
+                .quantityOnHand(100 + (int) (index % 50))
+                .price(new BigDecimal("12.99"))
+                .createdDate(LocalDateTime.of(2024, 1, 1, 12, 0))
+                .updateDate(LocalDateTime.of(2024, 1, 2, 12, 0))
+                .build();
+    }
+
+    private void handleToken(HttpExchange exchange) throws IOException {
+        drain(exchange);
+        delay();
+        tokenRequests.incrementAndGet();
+        respond(exchange, 200, ("{\"access_token\":\"stub-token\",\"token_type\":\"Bearer\",\"expires_in\":"
+                + tokenLifetimeSeconds + "}").getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void handleBeer(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        drain(exchange);
+        if (slowRate > 0 && ThreadLocalRandom.current().nextDouble() < slowRate) {
+            sleep(slowLatencyNanos);
+        } else {
+            delay();
+        }
+        if (unauthorizedRequests.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+            respond(exchange, 401, null);
+            return;
+        }
+        if (errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate) {
+            failedRequests.incrementAndGet();
+            respond(exchange, 503, null);
+            return;
+        }
+        String path = exchange.getRequestURI().getPath();
+        boolean collection = path.equals(BeerClientImpl.GET_BEER_PATH);
+
+        switch (exchange.getRequestMethod()) {
+            case "GET" -> {
+                if (collection) {
+                    pageRequests.incrementAndGet();
+                    respond(exchange, 200, page(exchange.getRequestURI().getRawQuery()));
+                } else {
+                    respond(exchange, 200, beerJson);
+                }
+            }
+            case "POST" -> {
+                exchange.getResponseHeaders().add("Location", BeerClientImpl.GET_BEER_PATH + "/" + UUID.randomUUID());
+                respond(exchange, 201, null);
+            }
+            case "PUT", "DELETE" -> respond(exchange, 204, null);
+            default -> respond(exchange, 405, null);
+        }
+    }
+
+    private byte[] page(String query) {
+        Map<String, String> params = new LinkedHashMap<>();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                String[] keyValue = pair.split("=", 2);
+                params.put(keyValue[0], keyValue.length > 1 ? keyValue[1] : "");
+            }
+        }
+
+        //Same defaults as the beer service, pageNumber is 1-based
+        int pageNumber = Math.max(1, Integer.parseInt(params.getOrDefault("pageNumber", "1")));
+        int pageSize = Math.min(1000, Integer.parseInt(params.getOrDefault("pageSize", "25")));
+
+        return pageJson.computeIfAbsent(pageNumber + ":" + pageSize, key -> {
+            List<BeerDTO> content = new ArrayList<>();
+            long first = (long) (pageNumber - 1) * pageSize;
+            for (long i = first; i < Math.min(first + pageSize, catalogueSize); i++) {
+                content.add(beer(i));
+            }
+
+            Map<String, Object> page = new LinkedHashMap<>();
+            page.put("content", content);
+            page.put("number", pageNumber - 1);
+            page.put("size", pageSize);
+            page.put("totalElements", catalogueSize);
+            page.put("totalPages", (catalogueSize + pageSize - 1) / pageSize);
+            return toJson(page);
+        });
+    }
+
+    private byte[] toJson(Object value) {
+        try {
+            return objectMapper.writeValueAsBytes(value);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private void drain(HttpExchange exchange) throws IOException {
+        connections.add(exchange.getRemoteAddress());
+        try (InputStream body = exchange.getRequestBody()) {
+            body.transferTo(OutputStream.nullOutputStream());
+        }
+    }
+
+    private void delay() throws IOException {
+        long nanos = latencyNanos;
+        if (latencyJitterNanos > 0) {
+            nanos += ThreadLocalRandom.current().nextLong(latencyJitterNanos);
+        }
+        sleep(nanos);
+    }
+
+    private static void sleep(long nanos) throws IOException {
+        if (nanos > 0) {
+            try {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while delaying the response", e);
+            }
+        }
+    }
+
+    private static void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        if (body == null) {
+            exchange.sendResponseHeaders(status, -1);
+        } else {
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, body.length);
+            exchange.getResponseBody().write(body);
+        }
+        exchange.close();
+    }
+}
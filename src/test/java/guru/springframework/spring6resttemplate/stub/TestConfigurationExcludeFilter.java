@@ -0,0 +1,24 @@
+package guru.springframework.spring6resttemplate.stub;
+
+import org.springframework.boot.context.TypeExcludeFilter;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.type.classreading.MetadataReader;
+import org.springframework.core.type.classreading.MetadataReaderFactory;
+
+/**
+ * Keeps the component scan away from the @TestConfiguration beans of the test classes, which are on the
+ * classpath when the application is started against BeerStubServer from benchmarks and load tests.
+ * Register it as a singleton named testConfigurationExcludeFilter, see {@link #register}.
+ */
+public class TestConfigurationExcludeFilter extends TypeExcludeFilter {
+
+    public static void register(ConfigurableApplicationContext context) {
+        context.getBeanFactory().registerSingleton("testConfigurationExcludeFilter", new TestConfigurationExcludeFilter());
+    }
+
+    @Override
+    public boolean match(MetadataReader metadataReader, MetadataReaderFactory metadataReaderFactory) {
+        return metadataReader.getAnnotationMetadata().hasAnnotation(TestConfiguration.class.getName());
+    }
+}